@@ -0,0 +1,355 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ResultSink that writes results on a background thread. Publishing only adds the result to a lock-free queue,
+ * so the thread that classifies never waits on formatting, a synchronized stream or the disk. The writer thread
+ * drains the queue in order and flushes whenever it catches up.
+ *
+ * The queue holds at most a fixed amount of results. If the writer falls that far behind, newer results are
+ * dropped (and counted) rather than letting the queue grow without bound.
+ */
+public class AsyncResultSink implements ResultSink {
+
+  public static final int DEFAULT_CAPACITY = 4096; // Results that may wait to be written before new ones are dropped
+  private static final long CLOSE_WAIT_MILLIS = 1000; // How long close waits for the queue to be written
+
+  // The names of each figure as they are displayed in the console
+  private static final String[] FIGURE_LABELS = {"base hor a", "top hor b", "right ver c", "center ver d",
+      "diagonal e", "center hor f", "left fork fg", "left leg h", "topleft roof i", "left curve j",
+      "center right curve k", "topcenter roof l", "right leg m", "left diagonal n", "mig-high center roof o",
+      "right fork p", "top-left curve q", "far left vertical r", "far right vertical s"};
+
+  /**
+   * Turns results into output. Only ever called from the writer thread, so implementations need no locking.
+   */
+  public interface Writer {
+
+    /**
+     * Writes one result.
+     * @param time when the result was published, in milliseconds since the epoch
+     * @param result the result to write
+     * @throws IOException if the output cannot be written
+     */
+    void write(long time, ClassificationResult result) throws IOException;
+
+    /**
+     * Pushes out anything buffered. Called whenever the queue has been emptied.
+     * @throws IOException if the output cannot be written
+     */
+    default void flush() throws IOException {
+      // Nothing buffered by default
+    }
+
+    /**
+     * Releases the output once every result has been written.
+     * @throws IOException if the output cannot be closed
+     */
+    default void close() throws IOException {
+      this.flush();
+    }
+
+  }
+
+  private final Writer writer;
+  private final int capacity;
+  private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger(); // Results in the queue, kept apart since size() is slow
+  private final AtomicBoolean sleeping = new AtomicBoolean(); // Whether the writer is parked, waiting for results
+  private final LongAdder written = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread thread;
+  private volatile boolean closed;
+
+  private static AsyncResultSink shared; // The console sink of every window given no sink of its own, once created
+
+  /**
+   * Creates an AsyncResultSink and starts its writer thread.
+   * @param writer what to write each result with
+   * @param capacity the most results that may wait to be written
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public AsyncResultSink(Writer writer, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The queue must hold at least one result");
+    }
+    this.writer = writer;
+    this.capacity = capacity;
+    this.thread = new Thread(this::drain, "result-writer");
+    this.thread.setDaemon(true); // The writer should never keep the application open
+    this.thread.start();
+  }
+
+  /**
+   * Creates an AsyncResultSink that prints every result to the console in the format the windows have always used.
+   * @return the sink
+   */
+  public static AsyncResultSink console() {
+    return new AsyncResultSink(new ConsoleWriter(System.out), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Returns the console sink shared by every window that is not given a sink of its own, so only one writer thread is
+   * started however many windows are opened. It is created on first use and closed when the application shuts down,
+   * so its users must not close it themselves.
+   * @return the shared sink
+   */
+  public static synchronized AsyncResultSink sharedConsole() {
+    if (shared == null) {
+      shared = console();
+      Runtime.getRuntime().addShutdownHook(new Thread(shared::close)); // Write out the last results on the way out
+    }
+    return shared;
+  }
+
+  /**
+   * Creates an AsyncResultSink that appends every result to a file as a line of JSON, for example
+   * {"time":1700000000000,"prediction":7,"margin":0.25,"weights":[...10 values],"figures":[...19 values]}
+   * @param file the file to append to, which is created if it does not exist
+   * @return the sink
+   * @throws IOException if the file cannot be opened
+   */
+  public static AsyncResultSink jsonLines(Path file) throws IOException {
+    BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    return new AsyncResultSink(new JsonLinesWriter(out), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Queues a finished classification to be written, without waiting for it. The result is dropped and counted
+   * instead if the sink is closed or too many results are already waiting.
+   * @param result the classification, which must not be changed afterwards
+   */
+  public void publish(ClassificationResult result) {
+    if (this.closed) {
+      this.dropped.increment();
+      return;
+    }
+    if (this.pending.incrementAndGet() > this.capacity) {
+      this.pending.decrementAndGet();
+      this.dropped.increment();
+      return;
+    }
+    Entry entry = new Entry(System.currentTimeMillis(), result);
+    this.queue.offer(entry);
+
+    // The sink may have been closed since the check above. The writer drains whatever is queued before it stops, but
+    // it may already have stopped, so take the result back out and count it as dropped. If the writer took it first,
+    // it is written
+    if (this.closed && this.queue.remove(entry)) {
+      this.pending.decrementAndGet();
+      this.dropped.increment();
+      return;
+    }
+    if (this.sleeping.get() && this.sleeping.compareAndSet(true, false)) {
+      LockSupport.unpark(this.thread);
+    }
+  }
+
+  /**
+   * Stops taking results, waits a moment for the queue to be written, then closes the writer.
+   */
+  public void close() {
+    this.closed = true;
+    LockSupport.unpark(this.thread);
+    try {
+      this.thread.join(CLOSE_WAIT_MILLIS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns how many results have been written.
+   * @return the amount of results written
+   */
+  public long getWritten() {
+    return this.written.sum();
+  }
+
+  /**
+   * Returns how many results were thrown away because the queue was full or the sink was closed.
+   * @return the amount of results dropped
+   */
+  public long getDropped() {
+    return this.dropped.sum();
+  }
+
+  /**
+   * The body of the writer thread: writes results as they arrive, flushing and parking whenever the queue runs dry.
+   */
+  private void drain() {
+    try {
+      while (true) {
+        Entry entry = this.queue.poll();
+        if (entry != null) {
+          this.pending.decrementAndGet();
+          this.write(entry);
+          continue;
+        }
+
+        this.flush();
+        if (this.closed && this.queue.isEmpty()) {
+          break; // Checking the queue after seeing the sink closed catches a result published just before closing
+        }
+
+        // Check the queue again after saying we are asleep, so a result published in between is not left waiting
+        this.sleeping.set(true);
+        if (this.queue.isEmpty() && !this.closed) {
+          LockSupport.park(this);
+        }
+        this.sleeping.set(false);
+      }
+    }
+    finally {
+      try {
+        this.writer.close();
+      }
+      catch (IOException e) {
+        System.err.println("Could not close the result output: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Writes one result, reporting a failure without stopping the writer thread.
+   * @param entry the result to write
+   */
+  private void write(Entry entry) {
+    try {
+      this.writer.write(entry.time, entry.result);
+      this.written.increment();
+    }
+    catch (IOException e) {
+      this.dropped.increment();
+      System.err.println("Could not write a result: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Flushes the writer, reporting a failure without stopping the writer thread.
+   */
+  private void flush() {
+    try {
+      this.writer.flush();
+    }
+    catch (IOException e) {
+      System.err.println("Could not flush the result output: " + e.getMessage());
+    }
+  }
+
+  /**
+   * A result waiting in the queue, with the time it was published.
+   */
+  private static class Entry {
+
+    private final long time;
+    private final ClassificationResult result;
+
+    /**
+     * Creates an Entry.
+     * @param time when the result was published, in milliseconds since the epoch
+     * @param result the result
+     */
+    Entry(long time, ClassificationResult result) {
+      this.time = time;
+      this.result = result;
+    }
+
+  }
+
+  /**
+   * Prints the estimated weight of each figure and digit, and the predicted digit, the way the windows always have.
+   * Each result is built into one string first, so the console is locked once per result rather than once per line.
+   */
+  private static class ConsoleWriter implements Writer {
+
+    private final PrintStream out;
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Creates a ConsoleWriter.
+     * @param out the stream to print to
+     */
+    ConsoleWriter(PrintStream out) {
+      this.out = out;
+    }
+
+    public void write(long time, ClassificationResult result) {
+      String newline = System.lineSeparator();
+      this.text.setLength(0);
+      this.text.append("----------").append(newline);
+      for (int idx = 0; idx < DigitClassifier.FIGURE_COUNT; idx += 1) {
+        this.text.append(FIGURE_LABELS[idx]).append(' ').append(result.getFigure(idx)).append(newline);
+      }
+      this.text.append("----------").append(newline);
+
+      // Display all of the weights
+      for (int digit = 1; digit <= DigitClassifier.DIGIT_COUNT; digit += 1) {
+        this.text.append(digit % 10).append(": ").append(result.getWeight(digit % 10)).append(newline);
+      }
+
+      // Display the digit with the highest weight
+      this.text.append("Predicted answer: ").append(result.getPrediction()).append(newline);
+      this.out.print(this.text);
+    }
+
+    public void flush() {
+      this.out.flush();
+    }
+
+    public void close() {
+      this.out.flush(); // The console belongs to the whole program, so it is left open
+    }
+
+  }
+
+  /**
+   * Writes each result as one line of JSON.
+   */
+  private static class JsonLinesWriter implements Writer {
+
+    private final BufferedWriter out;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Creates a JsonLinesWriter.
+     * @param out the file to write to
+     */
+    JsonLinesWriter(BufferedWriter out) {
+      this.out = out;
+    }
+
+    public void write(long time, ClassificationResult result) throws IOException {
+      this.line.setLength(0);
+      this.line.append("{\"time\":").append(time);
+      result.appendJson(this.line.append(','));
+      this.line.append("}\n");
+      this.out.append(this.line);
+    }
+
+    public void flush() throws IOException {
+      this.out.flush();
+    }
+
+    public void close() throws IOException {
+      this.out.close();
+    }
+
+  }
+
+}
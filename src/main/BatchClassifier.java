@@ -0,0 +1,142 @@
+package main;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Classifies many images at once by splitting them across the threads of a ForkJoinPool. Every worker thread keeps
+ * its own Scratch, so the threads share nothing but the input and the output array, and the
+ * predictions come back in the same order as the input.
+ */
+public class BatchClassifier {
+
+  public static final int NO_PREDICTION = -1; // Given to images that could not be classified (empty or too small)
+  private static final int LEAF_SIZE = 256; // Images are handed to threads in runs of at most this many
+
+  private final DigitRecognizer classifier;
+  private final ForkJoinPool pool;
+  private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * Creates a BatchClassifier that runs on the common ForkJoinPool, which has a thread for every core.
+   * @param classifier the classifier to run
+   */
+  public BatchClassifier(DigitRecognizer classifier) {
+    this(classifier, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a BatchClassifier that runs on the given pool.
+   * @param classifier the classifier to run
+   * @param pool the pool to split the work across
+   */
+  public BatchClassifier(DigitRecognizer classifier, ForkJoinPool pool) {
+    this.classifier = classifier;
+    this.pool = pool;
+  }
+
+  /**
+   * Classifies a list of square bitmaps.
+   * @param bitmaps the images, each read left to right, top to bottom (see Bitmap)
+   * @return the predicted digit of each image in input order, or NO_PREDICTION where one could not be made
+   */
+  public int[] classifyBatch(List<boolean[]> bitmaps) {
+    int[] predictions = new int[bitmaps.size()];
+    this.pool.invoke(new Split(0, bitmaps.size(), (first, last) -> {
+      Scratch own = this.scratch.get();
+      for (int idx = first; idx < last; idx += 1) {
+        predictions[idx] = this.predict(new Bitmap(bitmaps.get(idx)), own);
+      }
+    }));
+    return predictions;
+  }
+
+  /**
+   * Classifies a slice of an IDX dataset, reading the samples straight from the mapped file.
+   * @param dataset the dataset to read
+   * @param from the first sample to classify (inclusive)
+   * @param to the last sample to classify (exclusive)
+   * @return the predicted digit of each sample in order, or NO_PREDICTION where one could not be made
+   * @throws IllegalArgumentException if the slice is not inside the dataset
+   */
+  public int[] classifyBatch(IdxDataset dataset, int from, int to) {
+    if (from < 0 || to > dataset.size() || from > to) {
+      throw new IllegalArgumentException("Invalid slice " + from + " to " + to + " of " + dataset.size() + " samples");
+    }
+    int[] predictions = new int[to - from];
+    this.pool.invoke(new Split(from, to, (first, last) -> {
+      Scratch own = this.scratch.get();
+      IdxDataset.Sample sample = dataset.new Sample();
+      for (int idx = first; idx < last; idx += 1) {
+        sample.moveTo(idx);
+        predictions[idx - from] = this.predict(sample, own);
+      }
+    }));
+    return predictions;
+  }
+
+  /**
+   * Predicts a single image, turning a failure into NO_PREDICTION so one bad image does not stop the batch.
+   * @param source the image to classify
+   * @param own the calling thread's scratch
+   * @return the predicted digit, or NO_PREDICTION
+   */
+  private int predict(PixelSource source, Scratch own) {
+    try {
+      return this.classifier.predict(source, own);
+    }
+    catch (IllegalArgumentException e) {
+      return NO_PREDICTION;
+    }
+  }
+
+  /**
+   * Classifies a run of images on the current thread.
+   */
+  private interface Run {
+
+    /**
+     * Classifies the images in the given range.
+     * @param first the first index (inclusive)
+     * @param last the last index (exclusive)
+     */
+    void classify(int first, int last);
+
+  }
+
+  /**
+   * Splits a range of images in half until each part is small enough to classify on one thread.
+   */
+  private static class Split extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L; // Tasks are never serialized, but ForkJoinTask is Serializable
+
+    private final int from;
+    private final int to;
+    private final Run run;
+
+    /**
+     * Creates a Split over the given range.
+     * @param from the first index (inclusive)
+     * @param to the last index (exclusive)
+     * @param run what to do with each part
+     */
+    Split(int from, int to, Run run) {
+      this.from = from;
+      this.to = to;
+      this.run = run;
+    }
+
+    protected void compute() {
+      if (this.to - this.from <= LEAF_SIZE) {
+        this.run.classify(this.from, this.to);
+        return;
+      }
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new Split(this.from, mid, this.run), new Split(mid, this.to, this.run));
+    }
+
+  }
+
+}
@@ -0,0 +1,48 @@
+package main;
+
+/**
+ * A square image stored as a flat boolean array, for drawings that come from outside the application.
+ * Pixel (col, row) is at index row * size + col, so the array reads left to right, top to bottom like the image.
+ */
+public class Bitmap implements PixelSource {
+
+  private final boolean[] pixels;
+  private final int size;
+
+  /**
+   * Creates a Bitmap over the given pixels. The array is used as is, not copied.
+   * @param pixels the pixels, (col, row) at index row * size + col
+   * @throws IllegalArgumentException if the pixels do not form a square
+   */
+  public Bitmap(boolean[] pixels) {
+    int size = (int) Math.round(Math.sqrt(pixels.length));
+    if (size * size != pixels.length) {
+      throw new IllegalArgumentException("A bitmap of " + pixels.length + " pixels is not square");
+    }
+    this.pixels = pixels;
+    this.size = size;
+  }
+
+  /**
+   * Returns the width (and height) of this bitmap.
+   * @return the number of pixels along each side
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns whether the pixel at the given indices is active.
+   * @param col the column to check
+   * @param row the row to check
+   * @return whether that pixel is active
+   * @throws IndexOutOfBoundsException if the pixel is outside the bitmap
+   */
+  public boolean getVal(int col, int row) {
+    if (col < 0 || row < 0 || col >= this.size || row >= this.size) {
+      throw new IndexOutOfBoundsException("Pixel (" + col + ", " + row + ") is outside the image");
+    }
+    return this.pixels[row * this.size + col];
+  }
+
+}
@@ -0,0 +1,567 @@
+package main;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and writes drawings in a compact binary form, for request bodies, stored corpora and replay logs.
+ * Every drawing is a header followed by its pixels:
+ *
+ * magic      4 bytes  "DRAW"
+ * version    1 byte   VERSION
+ * flags      1 byte   HAS_LABEL, HAS_CROP and RUN_LENGTH, or'd together
+ * size       2 bytes  the width (and height) of the image, 1 to 65535
+ * label      1 byte   only with HAS_LABEL: the digit drawn
+ * crop       6 bytes  only with HAS_CROP: the left, top and size of the crop, 2 bytes each
+ * pixels     either size * size bits, row by row, or with RUN_LENGTH the lengths of the alternating runs of
+ *            inactive and active pixels (starting with inactive, which may be 0 long) as unsigned LEB128 varints
+ *
+ * Multi-byte numbers are big-endian, whatever the byte order of the buffer, which is left as it was. The pixel bits
+ * are packed from the lowest bit of each byte up, so pixel i of the image is bit (i % 8) of byte (i / 8) of the
+ * pixels. A 50x50 drawing takes at most 8 + 7 + 313 bytes.
+ *
+ * Both directions work on a ByteBuffer at its position, reading and writing the packed words of a DrawingBoard
+ * directly, so a drawing never passes through an array of pixels on its way in or out.
+ */
+public class BoardCodec {
+
+  public static final int MAGIC = 0x44524157; // "DRAW"
+  public static final int VERSION = 1;
+  public static final int HAS_LABEL = 1; // The header holds the digit drawn
+  public static final int HAS_CROP = 2; // The header holds the crop of the drawing
+  public static final int RUN_LENGTH = 4; // The pixels are stored as run lengths rather than bits
+  public static final int NO_LABEL = -1; // Given to write and returned by Header.getLabel when there is no label
+  private static final int HEADER_SIZE = 8; // Magic, version, flags and size
+  private static final int MAX_SIZE = 0xFFFF;
+  private static final int KNOWN_FLAGS = HAS_LABEL | HAS_CROP | RUN_LENGTH;
+
+  private BoardCodec() {
+    // Only static methods
+  }
+
+  /**
+   * The header of an encoded drawing.
+   */
+  public static class Header {
+
+    private final int size;
+    private final int label;
+    private final CropRect crop;
+    private final boolean runLength;
+
+    /**
+     * Creates a Header.
+     * @param size the width (and height) of the image
+     * @param label the digit drawn, or NO_LABEL
+     * @param crop the crop of the drawing, or null if it was not stored
+     * @param runLength whether the pixels are stored as run lengths
+     */
+    Header(int size, int label, CropRect crop, boolean runLength) {
+      this.size = size;
+      this.label = label;
+      this.crop = crop;
+      this.runLength = runLength;
+    }
+
+    /**
+     * Returns the width (and height) of the image.
+     * @return the size of the image
+     */
+    public int getSize() {
+      return this.size;
+    }
+
+    /**
+     * Returns the digit drawn.
+     * @return the label, or NO_LABEL if the drawing has none
+     */
+    public int getLabel() {
+      return this.label;
+    }
+
+    /**
+     * Returns the crop of the drawing, which always lies inside the image.
+     * @return the crop, or null if it was not stored
+     */
+    public CropRect getCrop() {
+      return this.crop;
+    }
+
+    /**
+     * Returns whether the pixels are stored as run lengths rather than bits.
+     * @return whether the pixels are run length encoded
+     */
+    public boolean isRunLength() {
+      return this.runLength;
+    }
+
+  }
+
+  /**
+   * Returns the most bytes write can use for an image of the given size, for sizing buffers.
+   * @param size the width (and height) of the image
+   * @return the most bytes an encoded image of that size can take
+   */
+  public static int maxEncodedSize(int size) {
+    return HEADER_SIZE + 1 + 6 + (int) (((long) size * size + 7) >>> 3);
+  }
+
+  /**
+   * Writes an image at the position of a buffer, storing the pixels whichever way is smaller.
+   * @param source the image to write
+   * @param label the digit drawn (0 to 255), or NO_LABEL
+   * @param withCrop whether to store the crop of the drawing, which is left out anyway if the image is empty
+   * @param out the buffer to write to, which is left positioned after the drawing
+   * @throws IllegalArgumentException if the image or label do not fit the format
+   * @throws java.nio.BufferOverflowException if the buffer does not have room
+   */
+  public static void write(PixelSource source, int label, boolean withCrop, ByteBuffer out) {
+    int size = source.size();
+    if (size < 1 || size > MAX_SIZE) {
+      throw new IllegalArgumentException("An image must be between 1 and " + MAX_SIZE + " pixels wide");
+    }
+    if (label != NO_LABEL && (label < 0 || label > 0xFF)) {
+      throw new IllegalArgumentException("A label must fit in a byte");
+    }
+
+    CropRect crop = null;
+    if (withCrop) {
+      try {
+        crop = source.getCrop();
+      }
+      catch (IllegalArgumentException e) {
+        // An empty image has no crop to store
+      }
+    }
+    long rawBytes = ((long) size * size + 7) >>> 3;
+    boolean runLength = runLengthBytes(source, rawBytes) < rawBytes;
+
+    int flags = (label != NO_LABEL ? HAS_LABEL : 0) | (crop != null ? HAS_CROP : 0) | (runLength ? RUN_LENGTH : 0);
+    ByteOrder order = out.order(); // The header is big-endian whatever the caller uses, so it is put back afterwards
+    out.order(ByteOrder.BIG_ENDIAN);
+    try {
+      out.putInt(MAGIC);
+      out.put((byte) VERSION);
+      out.put((byte) flags);
+      out.putShort((short) size);
+      if (label != NO_LABEL) {
+        out.put((byte) label);
+      }
+      if (crop != null) {
+        out.putShort((short) crop.getLeft());
+        out.putShort((short) crop.getTop());
+        out.putShort((short) crop.getSize());
+      }
+    }
+    finally {
+      out.order(order);
+    }
+
+    if (runLength) {
+      writeRuns(source, out);
+    }
+    else {
+      writeBits(source, out);
+    }
+  }
+
+  /**
+   * Reads a drawing from the position of a buffer into a new DrawingBoard. The header is checked against the widest
+   * drawing the caller accepts before the board is made, since run lengths let a few bytes claim a huge image.
+   * @param in the buffer to read, which is left positioned after the drawing
+   * @param maxSize the width (and height) of the widest drawing to accept
+   * @return the board holding the drawing
+   * @throws IOException if the buffer does not hold a drawing in this format, or it is wider than maxSize
+   */
+  public static DrawingBoard read(ByteBuffer in, int maxSize) throws IOException {
+    Header header = readHeader(in);
+    if (header.getSize() > maxSize) {
+      throw new IOException("The drawing is " + header.getSize() + " pixels wide, more than " + maxSize);
+    }
+    checkBitsFit(in, header);
+    DrawingBoard board = new DrawingBoard(header.getSize());
+    readPixels(in, header, board);
+    return board;
+  }
+
+  /**
+   * Reads a drawing from the position of a buffer into an existing DrawingBoard, replacing what it held, so boards
+   * can be reused across many drawings.
+   * @param in the buffer to read, which is left positioned after the drawing
+   * @param board the board to fill, which must be the size of the drawing
+   * @return the header of the drawing
+   * @throws IOException if the buffer does not hold a drawing in this format, or it is not the size of the board
+   */
+  public static Header read(ByteBuffer in, DrawingBoard board) throws IOException {
+    Header header = readHeader(in);
+    if (header.getSize() != board.size()) {
+      throw new IOException("The drawing is " + header.getSize() + " pixels wide, the board " + board.size());
+    }
+    readPixels(in, header, board);
+    return header;
+  }
+
+  /**
+   * Reads the header of a drawing, leaving the buffer positioned at its pixels.
+   * @param in the buffer to read
+   * @return the header
+   * @throws IOException if the buffer does not hold a drawing in this format, with known flags and a crop that fits
+   */
+  public static Header readHeader(ByteBuffer in) throws IOException {
+    ByteOrder order = in.order(); // The header is big-endian whatever the caller uses, so it is put back afterwards
+    in.order(ByteOrder.BIG_ENDIAN);
+    try {
+      if (in.getInt() != MAGIC) {
+        throw new IOException("Not an encoded drawing");
+      }
+      int version = in.get() & 0xFF;
+      if (version != VERSION) {
+        throw new IOException("Unsupported drawing version " + version);
+      }
+      int flags = in.get() & 0xFF;
+      if ((flags & ~KNOWN_FLAGS) != 0) {
+        throw new IOException("Unknown drawing flags " + Integer.toBinaryString(flags & ~KNOWN_FLAGS));
+      }
+      int size = in.getShort() & 0xFFFF;
+      if (size < 1) {
+        throw new IOException("An encoded drawing must be at least 1 pixel wide");
+      }
+      int label = (flags & HAS_LABEL) != 0 ? in.get() & 0xFF : NO_LABEL;
+      CropRect crop = null;
+      if ((flags & HAS_CROP) != 0) {
+        crop = new CropRect(in.getShort() & 0xFFFF, in.getShort() & 0xFFFF, in.getShort() & 0xFFFF);
+        if (crop.getSize() < 1 || crop.getLeft() + crop.getSize() > size || crop.getTop() + crop.getSize() > size) {
+          throw new IOException("The crop of the drawing does not fit inside its " + size + "x" + size + " image");
+        }
+      }
+      return new Header(size, label, crop, (flags & RUN_LENGTH) != 0);
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("The drawing is cut short");
+    }
+    finally {
+      in.order(order);
+    }
+  }
+
+  /**
+   * Makes sure the buffer still holds every byte of pixels stored as bits, so a header cannot claim more than is
+   * there.
+   * @param in the buffer, positioned at the pixels
+   * @param header the header read before them
+   * @throws IOException if the pixels are stored as bits and the buffer ends before them
+   */
+  private static void checkBitsFit(ByteBuffer in, Header header) throws IOException {
+    if (!header.isRunLength() && (((long) header.getSize() * header.getSize() + 7) >>> 3) > in.remaining()) {
+      throw new IOException("The drawing is cut short");
+    }
+  }
+
+  /**
+   * Reads the pixels that follow a header into a board of the same size.
+   * @param in the buffer, positioned at the pixels
+   * @param header the header read before them
+   * @param board the board to fill
+   * @throws IOException if the pixels are cut short or do not add up to the image
+   */
+  private static void readPixels(ByteBuffer in, Header header, DrawingBoard board) throws IOException {
+    try {
+      if (header.isRunLength()) {
+        readRuns(in, board);
+      }
+      else {
+        readBits(in, board);
+      }
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("The drawing is cut short");
+    }
+    finally {
+      board.refreshBounds();
+    }
+  }
+
+  /**
+   * Writes every pixel as a bit, 64 pixels of a row at a time.
+   * @param source the image
+   * @param out the buffer to write to
+   */
+  private static void writeBits(PixelSource source, ByteBuffer out) {
+    int size = source.size();
+    BitWriter writer = new BitWriter(out);
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 64) {
+        int len = Math.min(64, size - col);
+        writer.write(source.getBits(col, row, len), len);
+      }
+    }
+    writer.finish();
+  }
+
+  /**
+   * Reads every pixel as a bit, a whole word of the board at a time.
+   * @param in the buffer to read
+   * @param board the board to fill
+   */
+  private static void readBits(ByteBuffer in, DrawingBoard board) {
+    int size = board.size();
+    int wordsPerRow = board.getWordsPerRow();
+    BitReader reader = new BitReader(in);
+    for (int row = 0; row < size; row += 1) {
+      for (int word = 0; word < wordsPerRow; word += 1) {
+        board.setRowWord(row, word, reader.read(Math.min(64, size - (word << 6))));
+      }
+    }
+    reader.finish();
+  }
+
+  /**
+   * Works out how many bytes the run lengths of an image take, stopping early once they pass a limit.
+   * @param source the image
+   * @param limit the size at which counting can stop, since the bits would be smaller
+   * @return the bytes the run lengths take, or limit if they take at least that many
+   */
+  private static long runLengthBytes(PixelSource source, long limit) {
+    long[] bytes = new long[1];
+    boolean complete = forEachRun(source, run -> {
+      bytes[0] += varintBytes(run);
+      return bytes[0] < limit;
+    });
+    return complete ? bytes[0] : limit;
+  }
+
+  /**
+   * Writes the lengths of the alternating runs of inactive and active pixels.
+   * @param source the image
+   * @param out the buffer to write to
+   */
+  private static void writeRuns(PixelSource source, ByteBuffer out) {
+    forEachRun(source, run -> {
+      while (run >= 0x80) {
+        out.put((byte) (run | 0x80));
+        run >>>= 7;
+      }
+      out.put((byte) run);
+      return true;
+    });
+  }
+
+  /**
+   * Reads the lengths of the alternating runs of inactive and active pixels, activating the active runs.
+   * @param in the buffer to read
+   * @param board the board to fill, which is cleared first
+   * @throws IOException if the runs do not add up to the image
+   */
+  private static void readRuns(ByteBuffer in, DrawingBoard board) throws IOException {
+    board.clear();
+    int size = board.size();
+    long total = (long) size * size;
+    long pos = 0;
+    boolean active = false;
+    while (pos < total) {
+      long run = readVarint(in);
+      if (run > total - pos) {
+        throw new IOException("The runs of the drawing do not add up to its size");
+      }
+      if (active) {
+        // A run may span many rows, so fill it a row at a time
+        long end = pos + run;
+        while (pos < end) {
+          int row = (int) (pos / size);
+          int col = (int) (pos % size);
+          int last = (int) Math.min(size - 1, col + (end - pos) - 1);
+          board.fillRun(row, col, last);
+          pos += last - col + 1;
+        }
+      }
+      pos += active ? 0 : run;
+      active = !active;
+    }
+  }
+
+  /**
+   * Reads an unsigned LEB128 varint.
+   * @param in the buffer to read
+   * @return the value
+   * @throws IOException if the varint is too long to be a run length
+   */
+  private static long readVarint(ByteBuffer in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int part = in.get();
+      value |= (long) (part & 0x7F) << shift;
+      if (part >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("A run length of the drawing is too long");
+  }
+
+  /**
+   * Returns how many bytes a value takes as an unsigned LEB128 varint.
+   * @param value the value
+   * @return the amount of bytes
+   */
+  private static int varintBytes(long value) {
+    return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+  }
+
+  /**
+   * Something that takes each run length of an image in turn.
+   */
+  private interface RunVisitor {
+
+    /**
+     * Takes the next run length.
+     * @param run the length of the run
+     * @return whether to keep going
+     */
+    boolean visit(long run);
+
+  }
+
+  /**
+   * Walks the alternating runs of inactive and active pixels of an image, row by row, finding the end of each run
+   * with a bit scan rather than pixel by pixel. The first run is inactive and may be 0 long.
+   * @param source the image
+   * @param visitor what to give each run length to
+   * @return whether every run was visited, rather than the visitor stopping early
+   */
+  private static boolean forEachRun(PixelSource source, RunVisitor visitor) {
+    int size = source.size();
+    boolean active = false;
+    long run = 0;
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 64) {
+        int len = Math.min(64, size - col);
+        long bits = source.getBits(col, row, len);
+        int pos = 0;
+        while (pos < len) {
+          // Count the pixels from pos that match the current run, by scanning for the first that does not
+          long rest = (active ? ~bits : bits) >>> pos;
+          int same = Math.min(Long.numberOfTrailingZeros(rest), len - pos);
+          run += same;
+          pos += same;
+          if (pos < len) {
+            if (!visitor.visit(run)) {
+              return false;
+            }
+            run = 0;
+            active = !active;
+          }
+        }
+      }
+    }
+    return visitor.visit(run);
+  }
+
+  /**
+   * Packs bits into a buffer from the lowest bit of each byte up, up to 64 at a time.
+   */
+  private static class BitWriter {
+
+    private final ByteBuffer out;
+    private long pending; // Bits not yet written, from the lowest up
+    private int count; // How many bits are pending, always less than 8 between writes
+
+    /**
+     * Creates a BitWriter.
+     * @param out the buffer to write to
+     */
+    BitWriter(ByteBuffer out) {
+      this.out = out;
+    }
+
+    /**
+     * Writes up to 64 bits.
+     * @param bits the bits, from the lowest up
+     * @param len how many bits to write
+     */
+    void write(long bits, int len) {
+      if (len > 32) {
+        this.write(bits & 0xFFFFFFFFL, 32);
+        this.write(bits >>> 32, len - 32);
+        return;
+      }
+      this.pending |= (bits & ((1L << len) - 1)) << this.count;
+      this.count += len;
+      while (this.count >= 8) {
+        this.out.put((byte) this.pending);
+        this.pending >>>= 8;
+        this.count -= 8;
+      }
+    }
+
+    /**
+     * Writes the last partial byte, if any, padded with zeros.
+     */
+    void finish() {
+      if (this.count > 0) {
+        this.out.put((byte) this.pending);
+        this.pending = 0;
+        this.count = 0;
+      }
+    }
+
+  }
+
+  /**
+   * Unpacks bits written by a BitWriter, reading four bytes at a time where it can.
+   */
+  private static class BitReader {
+
+    private final ByteBuffer in;
+    private final boolean bigEndian;
+    private long pending; // Bits read but not yet used, from the lowest up
+    private int count; // How many bits are pending
+
+    /**
+     * Creates a BitReader.
+     * @param in the buffer to read
+     */
+    BitReader(ByteBuffer in) {
+      this.in = in;
+      this.bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * Reads up to 64 bits.
+     * @param len how many bits to read
+     * @return the bits, from the lowest up
+     */
+    long read(int len) {
+      if (len > 32) {
+        long low = this.read(32);
+        return low | (this.read(len - 32) << 32);
+      }
+      while (this.count < len) {
+        if (this.count < 32 && this.in.remaining() >= 4) {
+          int word = this.in.getInt();
+          this.pending |= ((this.bigEndian ? Integer.reverseBytes(word) : word) & 0xFFFFFFFFL) << this.count;
+          this.count += 32;
+        }
+        else {
+          this.pending |= (this.in.get() & 0xFFL) << this.count;
+          this.count += 8;
+        }
+      }
+      long bits = this.pending & (len == 64 ? -1L : (1L << len) - 1);
+      this.pending >>>= len;
+      this.count -= len;
+      return bits;
+    }
+
+    /**
+     * Gives back any whole bytes that were read ahead but not used, leaving the buffer just after the last bit.
+     */
+    void finish() {
+      this.in.position(this.in.position() - (this.count >>> 3));
+      this.pending = 0;
+      this.count = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,195 @@
+package main;
+
+/**
+ * Holds the outcome of classifying a single drawing: the weight of each of the 19 figures,
+ * the weight of each of the 10 digits, and the digit that was predicted.
+ *
+ * A result can be refilled with set or copyFrom, so one result can be reused for every drawing a thread classifies
+ * (see DigitRecognizer.classify with a Scratch) without allocating. Only reuse results you created yourself: those
+ * handed to a ResultSink must not change afterwards, so publish a copy of a result that is about to be reused.
+ */
+public class ClassificationResult {
+
+  private final double[] figures; // Figure weights, index 0 is figure A through index 18 for figure S
+  private final double[] weights; // Digit weights, indexed by the digit itself
+  private int prediction; // The digit with the highest weight
+
+  /**
+   * Creates an empty ClassificationResult, with every weight 0 and a prediction of 0, to be filled by set.
+   */
+  public ClassificationResult() {
+    this(new double[DigitClassifier.FIGURE_COUNT], new double[DigitClassifier.DIGIT_COUNT]);
+  }
+
+  /**
+   * Creates a ClassificationResult that keeps the given arrays, predicting the digit with the highest weight. Ties go
+   * to the lowest digit.
+   * @param figures the figure weights (A through S)
+   * @param weights the digit weights (0 through 9)
+   */
+  public ClassificationResult(double[] figures, double[] weights) {
+    this.figures = figures;
+    this.weights = weights;
+    this.prediction = highestWeight(weights);
+  }
+
+  /**
+   * Overwrites this result with the given weights, predicting the digit with the highest weight. Ties go to the
+   * lowest digit. The weights are copied, so the arrays can be reused straight away.
+   * @param figures the figure weights (A through S)
+   * @param weights the digit weights (0 through 9)
+   */
+  public void set(double[] figures, double[] weights) {
+    System.arraycopy(figures, 0, this.figures, 0, this.figures.length);
+    System.arraycopy(weights, 0, this.weights, 0, this.weights.length);
+    this.prediction = highestWeight(this.weights);
+  }
+
+  /**
+   * Overwrites this result with another.
+   * @param other the result to copy
+   */
+  public void copyFrom(ClassificationResult other) {
+    System.arraycopy(other.figures, 0, this.figures, 0, this.figures.length);
+    System.arraycopy(other.weights, 0, this.weights, 0, this.weights.length);
+    this.prediction = other.prediction;
+  }
+
+  /**
+   * Creates a copy of this result that later changes to this one do not affect, for example to publish.
+   * @return the copy
+   */
+  public ClassificationResult copy() {
+    return new ClassificationResult(this.figures.clone(), this.weights.clone());
+  }
+
+  /**
+   * Returns the weight of the given figure.
+   * @param index the figure index, 0 for A through 18 for S
+   * @return the weight of that figure
+   */
+  public double getFigure(int index) {
+    return this.figures[index];
+  }
+
+  /**
+   * Returns the weight of the given digit.
+   * @param digit the digit to check
+   * @return the weight of that digit
+   */
+  public double getWeight(int digit) {
+    return this.weights[digit];
+  }
+
+  /**
+   * Returns the predicted digit.
+   * @return the digit with the highest weight
+   */
+  public int getPrediction() {
+    return this.prediction;
+  }
+
+  /**
+   * Returns how far the predicted digit's weight is ahead of the next highest, as a measure of confidence.
+   * A margin near 0 means the drawing could almost as well be another digit.
+   * @return the predicted digit's weight less the highest weight of any other digit
+   */
+  public double getMargin() {
+    return margin(this.weights, this.prediction);
+  }
+
+  /**
+   * Figures out which digit has the highest weight. Ties go to the lowest digit. Every recognizer predicts this way,
+   * whether or not it fills in a result.
+   * @param weights the digit weights
+   * @return the digit with the highest weight
+   */
+  static int highestWeight(double[] weights) {
+    int highest = 0;
+    for (int digit = 1; digit < weights.length; digit += 1) {
+      if (weights[digit] > weights[highest]) {
+        highest = digit;
+      }
+    }
+    return highest;
+  }
+
+  /**
+   * Works out how far a digit's weight is ahead of the highest weight of any other digit.
+   * @param weights the digit weights
+   * @param digit the digit, usually the one with the highest weight
+   * @return the digit's weight less the highest weight of any other digit
+   */
+  static double margin(double[] weights, int digit) {
+    double runnerUp = Double.NEGATIVE_INFINITY;
+    for (int other = 0; other < weights.length; other += 1) {
+      if (other != digit) {
+        runnerUp = Math.max(runnerUp, weights[other]);
+      }
+    }
+    return weights[digit] - runnerUp;
+  }
+
+  /**
+   * Lists the digits with the highest weights, best first. Ties go to the lowest digit, the same as the prediction.
+   * @param digits the array to fill, as long as the amount of digits wanted (at most 10)
+   * @return how many digits were filled in, the smaller of the array's length and 10
+   */
+  public int topK(int[] digits) {
+    int count = Math.min(digits.length, this.weights.length);
+
+    // Insert each digit into the sorted list of the best so far, dropping whichever falls off the end
+    int filled = 0;
+    for (int digit = 0; digit < this.weights.length; digit += 1) {
+      int pos = filled;
+      while (pos > 0 && this.weights[digit] > this.weights[digits[pos - 1]]) {
+        pos -= 1;
+      }
+      if (pos >= count) {
+        continue;
+      }
+      for (int idx = Math.min(filled, count - 1); idx > pos; idx -= 1) {
+        digits[idx] = digits[idx - 1];
+      }
+      digits[pos] = digit;
+      filled = Math.min(filled + 1, count);
+    }
+    return count;
+  }
+
+  /**
+   * Writes this result as the members of a JSON object, without the surrounding braces so callers can add their own:
+   * "prediction":7,"margin":0.25,"weights":[...10 values],"figures":[...19 values]
+   * JSON has no NaN or infinities, so any such weight is written as null.
+   * @param text where to write
+   * @return the same StringBuilder
+   */
+  public StringBuilder appendJson(StringBuilder text) {
+    text.append("\"prediction\":").append(this.prediction);
+    appendNumber(text.append(",\"margin\":"), this.getMargin());
+    text.append(",\"weights\":[");
+    for (int digit = 0; digit < this.weights.length; digit += 1) {
+      appendNumber(digit == 0 ? text : text.append(','), this.weights[digit]);
+    }
+    text.append("],\"figures\":[");
+    for (int idx = 0; idx < this.figures.length; idx += 1) {
+      appendNumber(idx == 0 ? text : text.append(','), this.figures[idx]);
+    }
+    return text.append(']');
+  }
+
+  /**
+   * Appends a number the way JSON allows.
+   * @param text where to append
+   * @param value the number
+   */
+  private static void appendNumber(StringBuilder text, double value) {
+    if (Double.isFinite(value)) {
+      text.append(value);
+    }
+    else {
+      text.append("null");
+    }
+  }
+
+}
@@ -0,0 +1,357 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Classifies drawings for other processes on the same host over HTTP, without opening any windows.
+ *
+ * POST /classify with a body of one byte per pixel, read left to right, top to bottom (the same layout as an MNIST
+ * image), for either a 28x28 or a 50x50 image. A pixel counts as drawn from IdxDataset.DEFAULT_THRESHOLD up.
+ * The body may instead be a 28x28 or 50x50 drawing in the compact form written by BoardCodec. Bodies are told apart
+ * by their length: one of exactly 784 or 2500 bytes is read as a byte per pixel, and any other is decoded, since an
+ * encoded drawing of either size is far shorter than that.
+ * The response is a JSON object with the predicted digit, how far its weight is ahead of the runner up, and the
+ * weight of all 10 digits and all 19 figures:
+ * {"prediction":7,"margin":0.25,"weights":[...],"figures":[...]}
+ * An image of the wrong size is answered with 400, and one the classifier cannot use (empty or too small to divide
+ * into a grid) with 422. When classifying through a MicroBatcher whose queue is full, the answer is 503, and
+ * GET /stats shows the batcher's batch-size and queue-depth histograms.
+ *
+ * Every request runs on a virtual thread where the runtime has them, or otherwise on a pool with a thread for every
+ * core. Requests borrow their buffers from a shared pool, since a virtual thread lives for a single request and a
+ * ThreadLocal would be refilled every time. Nothing here touches AWT or Swing.
+ */
+public class ClassificationServer {
+
+  public static final int DEFAULT_PORT = 8080;
+  private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+  private static final int BACKLOG = 1024; // Connections the operating system may hold while every thread is busy
+  private static final int MAX_BODY = DrawingBoard.DEFAULT_SIZE * DrawingBoard.DEFAULT_SIZE; // The largest image taken
+
+  private final DigitRecognizer recognizer;
+  private final MicroBatcher batcher; // Gathers requests into batches before classifying, or null to classify each alone
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Queue<Buffers> spare = new ConcurrentLinkedQueue<>(); // Buffers not in use by any request
+
+  /**
+   * Creates a ClassificationServer listening on the loopback address. It does not answer until started.
+   * @param recognizer the recognizer to classify with, which must be safe to share between threads
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound
+   */
+  public ClassificationServer(DigitRecognizer recognizer, int port) throws IOException {
+    this(recognizer, null, port);
+  }
+
+  /**
+   * Creates a ClassificationServer listening on the loopback address that classifies through a MicroBatcher, so
+   * many small requests arriving together are classified in batches. It does not answer until started. The JDK
+   * server leaves Nagle's algorithm on unless the sun.net.httpserver.nodelay system property is true when the first
+   * server of the JVM is created. main sets it, and other callers that want small responses sent at once must too.
+   * @param recognizer the recognizer to classify with when there is no batcher
+   * @param batcher the batcher to classify through, or null to classify every request on its own thread
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound
+   */
+  public ClassificationServer(DigitRecognizer recognizer, MicroBatcher batcher, int port) throws IOException {
+    this.recognizer = recognizer;
+    this.batcher = batcher;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    this.executor = newExecutor();
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/classify", this::classify);
+    if (batcher != null) {
+      this.server.createContext("/stats", this::stats);
+    }
+  }
+
+  /**
+   * Starts answering requests in the background.
+   */
+  public void start() {
+    this.server.start();
+  }
+
+  /**
+   * Stops answering requests, letting any in progress finish for up to a second.
+   */
+  public void stop() {
+    this.server.stop(1);
+    this.executor.shutdown();
+    if (this.batcher != null) {
+      this.batcher.close();
+    }
+  }
+
+  /**
+   * Returns the port the server is listening on, which is useful when it was created with port 0.
+   * @return the port
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Creates an executor that runs every task on a new virtual thread. Virtual threads only exist from Java 21,
+   * so on older runtimes this falls back to a pool with a thread for every core, which suits classifying since
+   * it never blocks once the body has been read.
+   * @return the executor
+   */
+  private static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * Answers one request to /classify.
+   * @param exchange the request and its response
+   * @throws IOException if the connection fails
+   */
+  private void classify(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        this.respond(exchange, 405, "{\"error\":\"Only POST is supported\"}");
+        return;
+      }
+
+      Buffers buffers = this.spare.poll();
+      if (buffers == null) {
+        buffers = new Buffers();
+      }
+      try {
+        this.classify(exchange, buffers);
+      }
+      finally {
+        this.spare.offer(buffers);
+      }
+    }
+  }
+
+  /**
+   * Answers a request to /stats with the batcher's histograms, for example
+   * {"batchSizes":"1: 3, 2-3: 10 (mean 2.1)","queueDepths":"0: 13 (mean 0.0)"}
+   * @param exchange the request and its response
+   * @throws IOException if the connection fails
+   */
+  private void stats(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      this.respond(exchange, 200, "{\"batchSizes\":\"" + this.batcher.getBatchSizes()
+          + "\",\"queueDepths\":\"" + this.batcher.getQueueDepths() + "\"}");
+    }
+  }
+
+  /**
+   * Reads the image out of a request, classifies it and writes the response.
+   * @param exchange the request and its response
+   * @param buffers the working memory to use, which no other request is using
+   * @throws IOException if the connection fails
+   */
+  private void classify(HttpExchange exchange, Buffers buffers) throws IOException {
+    int length = readBody(exchange.getRequestBody(), buffers.body);
+    PixelSource image;
+    if (length == DrawingBoard.MNIST_SIZE * DrawingBoard.MNIST_SIZE) {
+      image = threshold(buffers.body, buffers.mnist, buffers.mnistBitmap);
+    }
+    else if (length == DrawingBoard.DEFAULT_SIZE * DrawingBoard.DEFAULT_SIZE) {
+      image = threshold(buffers.body, buffers.canvas, buffers.canvasBitmap);
+    }
+    else {
+      image = decode(buffers, length);
+    }
+    if (image == null) {
+      this.respond(exchange, 400, "{\"error\":\"Expected a " + DrawingBoard.MNIST_SIZE + "x" + DrawingBoard.MNIST_SIZE
+          + " or " + DrawingBoard.DEFAULT_SIZE + "x" + DrawingBoard.DEFAULT_SIZE
+          + " image, one byte per pixel or encoded by BoardCodec\"}");
+      return;
+    }
+
+    ClassificationResult result = buffers.result;
+    try {
+      if (this.batcher != null) {
+        result = this.batcher.submit(image).join(); // The image is only read until the future completes
+      }
+      else {
+        this.recognizer.classify(image, buffers.scratch, result);
+      }
+    }
+    catch (CompletionException e) {
+      if (e.getCause() instanceof RejectedExecutionException) {
+        this.respond(exchange, 503, "{\"error\":\"Too many requests are waiting\"}");
+      }
+      else {
+        this.respond(exchange, 422, "{\"error\":\"Could not classify the drawing\"}");
+      }
+      return;
+    }
+    catch (IllegalArgumentException e) {
+      this.respond(exchange, 422, "{\"error\":\"Could not classify the drawing\"}");
+      return;
+    }
+
+    buffers.json.setLength(0);
+    result.appendJson(buffers.json.append('{')).append('}');
+    this.respond(exchange, 200, buffers.json);
+  }
+
+  /**
+   * Fills an image from a body of one byte per pixel.
+   * @param body the body
+   * @param pixels the pixels of the image, as many as there are bytes in the body
+   * @param image the Bitmap reading the pixels
+   * @return the image
+   */
+  private static PixelSource threshold(byte[] body, boolean[] pixels, Bitmap image) {
+    for (int idx = 0; idx < pixels.length; idx += 1) {
+      pixels[idx] = (body[idx] & 0xFF) >= IdxDataset.DEFAULT_THRESHOLD;
+    }
+    return image;
+  }
+
+  /**
+   * Decodes a body written by BoardCodec into the board of the same size.
+   * @param buffers the working memory holding the body
+   * @param length the length of the body
+   * @return the board holding the drawing, or null if the body is not an encoded 28x28 or 50x50 drawing
+   */
+  private static PixelSource decode(Buffers buffers, int length) {
+    ByteBuffer in = ByteBuffer.wrap(buffers.body, 0, length);
+    try {
+      int size = BoardCodec.readHeader(in.duplicate()).getSize();
+      DrawingBoard board = size == DrawingBoard.MNIST_SIZE ? buffers.mnistBoard
+          : size == DrawingBoard.DEFAULT_SIZE ? buffers.canvasBoard : null;
+      if (board == null) {
+        return null;
+      }
+      BoardCodec.read(in, board);
+      return board;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads a request body into a buffer.
+   * @param in the body
+   * @param body the buffer, which must have room for one byte more than the largest body accepted
+   * @return the length of the body, or the length of the buffer if the body was longer than that
+   * @throws IOException if the connection fails
+   */
+  private static int readBody(InputStream in, byte[] body) throws IOException {
+    int length = in.readNBytes(body, 0, body.length);
+    in.transferTo(OutputStream.nullOutputStream()); // Drain a body too long to use, so the connection can be reused
+    return length;
+  }
+
+  /**
+   * Sends a JSON response.
+   * @param exchange the request to answer
+   * @param status the HTTP status code
+   * @param json the body
+   * @throws IOException if the connection fails
+   */
+  private void respond(HttpExchange exchange, int status, CharSequence json) throws IOException {
+    byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * The working memory of one request, reused by later requests once it is done.
+   */
+  private static class Buffers {
+
+    private final byte[] body = new byte[MAX_BODY + 1]; // One spare byte tells a body that is too long apart
+    private final boolean[] mnist = new boolean[DrawingBoard.MNIST_SIZE * DrawingBoard.MNIST_SIZE];
+    private final boolean[] canvas = new boolean[DrawingBoard.DEFAULT_SIZE * DrawingBoard.DEFAULT_SIZE];
+    private final Bitmap mnistBitmap = new Bitmap(this.mnist); // Bitmaps read the arrays above as they are filled
+    private final Bitmap canvasBitmap = new Bitmap(this.canvas);
+    private final DrawingBoard mnistBoard = new DrawingBoard(DrawingBoard.MNIST_SIZE); // For bodies from BoardCodec
+    private final DrawingBoard canvasBoard = new DrawingBoard(DrawingBoard.DEFAULT_SIZE);
+    private final Scratch scratch = new Scratch();
+    private final ClassificationResult result = new ClassificationResult(); // Refilled by every request
+    private final StringBuilder json = new StringBuilder();
+
+  }
+
+  /**
+   * Runs the server until the process is stopped.
+   * @param args optionally the port, then any of "templates" or "tuned" followed by a file to classify with instead
+   * of the hand-written figure rules, and "batch" followed by the most requests to classify together and the longest
+   * the first of them waits for the rest, in microseconds
+   * @throws IOException if the port cannot be bound or the file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    String usage = "Usage: ClassificationServer [port] [templates <file> | tuned <file>] [batch <size> <wait-micros>]";
+    int port = DEFAULT_PORT;
+    int first = 0;
+    if (args.length > 0 && args[0].matches("\\d{1,5}")) {
+      port = Integer.parseInt(args[0]);
+      first = 1;
+    }
+
+    DigitRecognizer recognizer = new DigitClassifier();
+    int batchSize = 0; // No batching unless asked for
+    long waitMicros = 0;
+    for (int idx = first; idx < args.length; idx += 2) {
+      if (idx + 1 < args.length && args[idx].equals("templates")) {
+        recognizer = TemplateClassifier.load(Paths.get(args[idx + 1]));
+      }
+      else if (idx + 1 < args.length && args[idx].equals("tuned")) {
+        recognizer = TunedClassifier.load(Paths.get(args[idx + 1]));
+      }
+      else if (idx + 2 < args.length && args[idx].equals("batch") && args[idx + 1].matches("\\d{1,6}")
+          && args[idx + 2].matches("\\d{1,9}")) {
+        batchSize = Integer.parseInt(args[idx + 1]);
+        waitMicros = Long.parseLong(args[idx + 2]);
+        idx += 1; // The batch option takes two values
+      }
+      else {
+        System.out.println(usage);
+        return;
+      }
+    }
+
+    MicroBatcher batcher = null;
+    if (batchSize > 0) {
+      batcher = new MicroBatcher(recognizer, batchSize, TimeUnit.MICROSECONDS.toNanos(waitMicros),
+          MicroBatcher.DEFAULT_CAPACITY);
+    }
+
+    // The JDK server leaves Nagle's algorithm on, which holds back every small response until the client's delayed
+    // ACK, about 40 ms later. It reads this setting once, when the first server is created
+    if (System.getProperty(NODELAY_PROPERTY) == null) {
+      System.setProperty(NODELAY_PROPERTY, "true");
+    }
+    ClassificationServer server = new ClassificationServer(recognizer, batcher, port);
+    server.start();
+    System.out.println("Classifying on http://localhost:" + server.getPort() + "/classify");
+  }
+
+}
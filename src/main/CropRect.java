@@ -0,0 +1,125 @@
+package main;
+
+/**
+ * The square region of an image that a VisionBoard takes in. It is the smallest square that contains every active
+ * pixel, moved back inside the image where it would hang off an edge.
+ */
+public class CropRect {
+
+  private final int left; // The leftmost column of the square
+  private final int top; // The uppermost row of the square
+  private final int size; // The width (and height) of the square
+
+  /**
+   * Creates a CropRect with the given position and size.
+   * @param left the leftmost column
+   * @param top the uppermost row
+   * @param size the width and height
+   */
+  public CropRect(int left, int top, int size) {
+    this.left = left;
+    this.top = top;
+    this.size = size;
+  }
+
+  /**
+   * Creates the CropRect for a drawing with the given bounds.
+   * @param left the column of the leftmost active pixel
+   * @param right the column of the rightmost active pixel
+   * @param top the row of the uppermost active pixel
+   * @param bottom the row of the lowermost active pixel
+   * @param scale the width (and height) of the image the drawing is on
+   * @return the squared and clamped CropRect
+   */
+  public static CropRect fromBounds(int left, int right, int top, int bottom, int scale) {
+    int width = (right - left) + 1;
+    int height = (bottom - top) + 1;
+
+    // Here we make the bounds square. This ensures that further calculations accurately assess equal amounts of the board
+    if (height > width) {
+      left -= (height - width) / 2;
+      right += (height - width) / 2 + (height - width) % 2;
+      width = right - left + 1;
+    }
+    else if (width > height) {
+      top -= (width - height) / 2;
+      bottom += (width - height) / 2 + (width - height) % 2;
+      height = bottom - top + 1;
+    }
+
+    // This makes sure that the square that will encapsulate the drawing does not go off the image
+    if (bottom >= scale) {
+      top = scale - height;
+    }
+    else if (top < 0) {
+      top = 0;
+    }
+
+    if (right >= scale) {
+      left = scale - width;
+    }
+    else if (left < 0) {
+      left = 0;
+    }
+
+    return new CropRect(left, top, width);
+  }
+
+  /**
+   * Finds the CropRect of any image by scanning it one packed row at a time.
+   * @param source the image to scan
+   * @return the squared and clamped CropRect around every active pixel
+   * @throws IllegalArgumentException if the image has no active pixels
+   */
+  public static CropRect scan(PixelSource source) {
+    int scale = source.size();
+    int left = scale;
+    int right = -1;
+    int top = -1;
+    int bottom = -1;
+
+    for (int row = 0; row < scale; row += 1) {
+      for (int col = 0; col < scale; col += 64) {
+        long bits = source.getBits(col, row, Math.min(64, scale - col));
+        if (bits != 0) {
+          if (top == -1) {
+            top = row;
+          }
+          bottom = row;
+          left = Math.min(left, col + Long.numberOfTrailingZeros(bits));
+          right = Math.max(right, col + 63 - Long.numberOfLeadingZeros(bits));
+        }
+      }
+    }
+
+    if (top == -1) {
+      throw new IllegalArgumentException("There is no drawing");
+    }
+    return fromBounds(left, right, top, bottom, scale);
+  }
+
+  /**
+   * Returns the leftmost column of the square.
+   * @return the leftmost column
+   */
+  public int getLeft() {
+    return this.left;
+  }
+
+  /**
+   * Returns the uppermost row of the square.
+   * @return the uppermost row
+   */
+  public int getTop() {
+    return this.top;
+  }
+
+  /**
+   * Returns the width (and height) of the square.
+   * @return the size of the square
+   */
+  public int getSize() {
+    return this.size;
+  }
+
+}
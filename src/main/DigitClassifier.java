@@ -0,0 +1,325 @@
+package main;
+
+/**
+ * The DigitClassifier is the recognition engine. It takes a drawing through every layer of processing
+ * (VisionBoard, LayerOne, figures, digit weights) and returns a prediction. It does not depend on Swing,
+ * so it can be used without a display.
+ */
+public class DigitClassifier implements DigitRecognizer {
+
+  public static final int FIGURE_COUNT = 19; // Figures A through S
+  public static final int DIGIT_COUNT = 10; // Digits 0 through 9
+
+  private final int gridSize; // The width (and height) of the grid drawings are simplified to
+
+  /**
+   * Creates a DigitClassifier that simplifies drawings to a 5x5 grid.
+   */
+  public DigitClassifier() {
+    this(LayerOne.DEFAULT_SIZE);
+  }
+
+  /**
+   * Creates a DigitClassifier that simplifies drawings to a grid of the given size. The figures always read the grid
+   * averaged back onto a 5x5 view, so a finer grid costs more to generate without giving them any more detail. It
+   * changes what the vision window shows, and only shifts the figure weights where its cells straddle two fifths.
+   * @param gridSize the width (and height) of the grid, for example 5, 7, 10 or 14
+   * @throws IllegalArgumentException if the grid size is not positive
+   */
+  public DigitClassifier(int gridSize) {
+    if (gridSize < 1) {
+      throw new IllegalArgumentException("The grid must have at least one cell");
+    }
+    this.gridSize = gridSize;
+  }
+
+  /**
+   * Returns the width (and height) of the grid this classifier simplifies drawings to.
+   * @return the grid size
+   */
+  public int getGridSize() {
+    return this.gridSize;
+  }
+
+  /**
+   * Classifies the drawing stored in the given DrawingBoard.
+   * @param board the drawing to classify
+   * @return the result of the classification
+   * @throws IllegalArgumentException if there is no drawing on the board
+   */
+  public ClassificationResult classify(DrawingBoard board) {
+    return this.classify(board.makeVisionBoard());
+  }
+
+  /**
+   * Classifies the drawing stored in the given VisionBoard.
+   * @param vBoard the VisionBoard to classify
+   * @return the result of the classification
+   */
+  public ClassificationResult classify(VisionBoard vBoard) {
+    return this.classify(vBoard.generateGrid(this.gridSize));
+  }
+
+  /**
+   * Classifies a drawing whose grid the caller already generated. Only the grid is read: the VisionBoard is taken
+   * because DigitRecognizer needs it for recognizers that work from the drawing itself, and is ignored here.
+   * @param vBoard the VisionBoard the grid was generated from, which is not read
+   * @param grid the grid generated from vBoard at getGridSize(), which is left unchanged
+   * @return the result of the classification
+   */
+  public ClassificationResult classify(VisionBoard vBoard, LayerOne grid) {
+    return this.classify(grid);
+  }
+
+  /**
+   * Classifies an already simplified drawing.
+   * @param l1 the LayerOne to classify
+   * @return the result of the classification
+   */
+  public ClassificationResult classify(LayerOne l1) {
+    double[] figures = new double[FIGURE_COUNT];
+    double[] weights = new double[DIGIT_COUNT];
+
+    l1.scoreFigures(figures);
+    scoreDigits(figures, weights);
+
+    return new ClassificationResult(figures, weights);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to divide into a grid
+   */
+  public void classify(PixelSource source, Scratch scratch, ClassificationResult result) {
+    LayerOne l1 = scratch.grid(this.gridSize);
+    scratch.vBoard.load(source);
+    scratch.vBoard.generateGrid(l1);
+    l1.scoreFigures(scratch.figures);
+    scoreDigits(scratch.figures, scratch.weights);
+    result.set(scratch.figures, scratch.weights);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to divide into a grid
+   */
+  public int predict(PixelSource source, Scratch scratch) {
+    LayerOne l1 = scratch.grid(this.gridSize);
+    scratch.vBoard.load(source);
+    scratch.vBoard.generateGrid(l1);
+    l1.scoreFigures(scratch.figures);
+    scoreDigits(scratch.figures, scratch.weights);
+    return ClassificationResult.highestWeight(scratch.weights);
+  }
+
+  /**
+   * Predicts the digit from figure weights that were already computed, for example by a LiveGrid, combining them
+   * into digit weights in the given Scratch.
+   * @param figures the weights of figures A through S over a grid of getGridSize(), which are left unchanged
+   * @param scratch the working memory to use, which must not be shared between threads
+   * @return the digit with the highest weight
+   */
+  public int predictFigures(double[] figures, Scratch scratch) {
+    System.arraycopy(figures, 0, scratch.figures, 0, FIGURE_COUNT); // scoreDigits adjusts K and E in place
+    scoreDigits(scratch.figures, scratch.weights);
+    return ClassificationResult.highestWeight(scratch.weights);
+  }
+
+  /**
+   * Combines the figure weights into a weight for each digit. This is Layer Two/Three of processing.
+   * Figures K and E are adjusted in place, so the figures array holds the values that were actually used.
+   * @param figures the figure weights, index 0 for figure A through 18 for figure S
+   * @param weights the array to fill, indexed by digit
+   */
+  public static void scoreDigits(double[] figures, double[] weights) {
+    StageEvents.Digits event = new StageEvents.Digits();
+    event.begin();
+
+    // Here we calculate the estimated weights of each figure that a given digit may have.
+    // This weight system is completely arbitrary and was manually adjusted as I tested out
+    // Various drawings
+    double a = figures[0];
+    double b = figures[1];
+    double c = figures[2];
+    double d = figures[3];
+    double e = figures[4];
+    double f = figures[5];
+    double fg = figures[6]; // Called this fg to match the naming used when it was drawn in the VisionPanel
+    double h = figures[7];
+    double i = figures[8];
+    double j = figures[9];
+    double k = figures[10];
+    double l = figures[11];
+    double m = figures[12];
+    double n = figures[13];
+    double o = figures[14];
+    double p = figures[15];
+    double q = figures[16];
+    double r = figures[17];
+    double s = figures[18];
+
+    // Here we count how many figures are certainly not active
+    // The ones that are commonly in an 8 have a higher weight when not present
+    double countOff = 0.0;
+    if (a == 0) {
+      countOff += 1.2;
+    }
+    if (b == 0) {
+      countOff += 1.2;
+    }
+    if (c == 0) {
+      countOff += 1.2;
+    }
+    if (d == 0) {
+      countOff += 1;
+    }
+    if (e == 0) {
+      countOff += 1;
+    }
+    if (f == 0) {
+      countOff += 1.2;
+    }
+    if (fg == 0) {
+      countOff += 1.2;
+    }
+    if (h == 0) {
+      countOff += 1.2;
+    }
+    if (i == 0) {
+      countOff += 1.2;
+    }
+    if (j == 0) {
+      countOff += 1;
+    }
+    if (k == 0) {
+      countOff += 1;
+    }
+    if (l == 0) {
+      countOff += 1.2;
+    }
+    if (m == 0) {
+      countOff += 1.2;
+    }
+    if (n == 0) {
+      countOff += 1.2;
+    }
+    if (o == 0) {
+      countOff += 1.2;
+    }
+    if (p == 0) {
+      countOff += 1;
+    }
+    if (q == 0) {
+      countOff += .2;
+    }
+
+    // K is a central curve to the right, present in 2, 3, and 8.
+    // D is a central vertical line. Typically, a digit only has one of these,
+    // and it's more frequently D, so we lower the weighting of K based on D
+    k = Math.max(k / 2.0, k - d);
+
+    // E represents a diagonal that can be present under a combination of two vertical lines (c and d)
+    // so we lower the frequency of E when those two are also there
+    e = Math.max(e / 2.0, e - (c + d) / 2.0);
+
+    figures[4] = e;
+    figures[10] = k;
+
+    // Calculate the estimated weight for each digit based on which figures are commonly present in them.
+    // For example: a common 6 usually has most of a base horizontal line (a), a top horizontal line (b),
+    // a center horizontal line (f), and a left fork (fg). In addition to b, it usually has a topleft horizontal (i)
+    // and/or a topcenter horizontal (l). A 6 also notably does NOT have a right vertical (c),
+    // a topright-downleft diagonal (e), or a centered right curve (k). That leads us to the equation for is6.
+    // Using the same reasoning, we can calculate a fairly accurate estimation system for each digit.
+    double is1 = (a + Math.max(d,j)) / 1.3 - (.7 * (2 * f + e + 1.1 * k + q));
+    double is2 = (((a * 1.8 + e + b + i) / 4.0) + ((a * 1.8 + k * 1.5 + b + i) / 4.0))
+        / 2.0 + 0.35 * q + .5 * l - (.5 * (f + j + Math.max(0, .25 - q) + (Math.max(0, (1 - 1.3 * a)))));
+    double is3 = ((l + i) * 1.5 + (Math.max(c, d) + f + 1.4 * k) / 4.0 + m) / 2.0
+        - (.8 * (fg * 2 + h + j + Math.max(0, (.3 - (l + o + c))) + Math.max(0,  (1 - 2.2 * c))));
+    double is4 = (Math.max(c, d) + Math.max(f, o) + fg + p) / 3.0 - (.7 * (j + h + l * 1.3 + Math.max(0, (1 - c)) + Math.max(0, (1 - 1.3 * fg))));
+    double is5 = (((a + b + f + 1.5 * fg) / 6.0) + ((a + b + f + fg + i * 2 + m) / 8.0) + l * 3) / 2.0 + o * .6
+        - (.7 * (Math.max(0, (.5 - 1.2 * a)) + Math.max(0, (1 - 1.4 * fg)) + Math.max(0, (1 - 2 * f)) + e + d + 1.6 * j + h * 1.3 + 0.5 * p));
+    double is6 = (a + b + f + fg + h + j + m) / 5.8 - .7 * (0.7 * p + e + k + o + Math.max(0, (1 - 1.4 * Math.max(h, j))));
+    double is7 = (b + Math.max(c, e) + 0.9 * k) / 3.0 - (.7 * (3 * a + fg * 2 + j + Math.max(0,  1 - 1.3 * b)));
+    double is8 = (a + b + c + d + e + f * 2 + fg * 2 + h + i + j + k + l + 0.7 * n + 1.5 * o + p) / 16.5 - (0.7 * Math.max(0, (1 - 1.1 * (fg + h))));
+    double is9 = (b + l + f + fg + Math.max(c, d)) / 4.5 + 0.6 * (o + p) -
+        (.7 * (a + e + h + i + Math.max(0, (1 - 1.3 * b)) + Math.max(0, (.5 - 1.3 * o)) + Math.max(0, (1 - 2 * l))));
+    double is0 = ((a + b + c + j) / 4.0 + (a + b + c + e + j) / 5.0) / 2.0 + (j + k + l + m) / 5.0 + 0.6 * (r + s)
+        - .7 * (f * 1.3 + k + n + Math.max(0, (1 - j)) + Math.max(0, (1 - 1.7 * p)));
+
+    // The weights can go negative if too few of the features for them are present, so we zero out any negative
+    // weights to make the system easier to read and understand
+    is1 = Math.max(is1, 0);
+    is2 = Math.max(is2, 0);
+    is3 = Math.max(is3, 0);
+    is4 = Math.max(is4, 0);
+    is5 = Math.max(is5, 0);
+    is6 = Math.max(is6, 0);
+    is7 = Math.max(is7, 0);
+    is8 = Math.max(is8, 0);
+    is9 = Math.max(is9, 0);
+    is0 = Math.max(is0, 0);
+
+    // Since 8 usually has most of the features than any other number would have, it's weight can tend to be
+    // too high, even when one or two parts may be missing (Ex: a 6 looks remarkably like an 8, but we should
+    // not even begin to consider it as an 8. We zero the weight for 8 if fewer than 7 features are confirmed
+    // not present
+    if (countOff > 8) {
+      is8 = 0.0;
+    }
+
+    // Typically, if we can see 0, 5 , and 6, and there's a horizontal mid-height line, then we're looking at an 8
+    if (is6 + is0 + is5 > is8 * 1.5 && f > 0.1) {
+      is8 += (is6 + is0 + is5) * 0.24;
+    }
+
+    // If there's vertical lines in the top left and bottom right, we're probably not looking at a 1
+    if (fg + p > .9) {
+      is1 = 0;
+    }
+
+    boolean leftVerts = fg + h > 0.9; // is there a vertical line on the left
+    boolean rightVerts = m + p > 1; // is there a vertical line on the right
+
+    // Remove the chance that any numbers that definitely do not include those features are considered
+    if (leftVerts) {
+      is3 = 0;
+      is5 = 0;
+      is7 = 0;
+    } else if (rightVerts) {
+      is5 *= .7;
+      is6 = 0;
+    }
+
+    // If there's vertical lines running over both edges, it probably isn't any of these numbers
+    if (r + s > 0.9) {
+      is1 = 0;
+      is2 = 0;
+      is3 = 0;
+      is7 = 0;
+    }
+
+    // If 8 seems to be more activated than 0, but there's only a diagonal line "/" and not a "\",
+    // we're probably looking at a 0 with a slash and not an 8.
+    if (is8 > is0 && e > 0.5 && n < 0.2) {
+      is0 += is8 * 0.5;
+    }
+
+    weights[0] = is0;
+    weights[1] = is1;
+    weights[2] = is2;
+    weights[3] = is3;
+    weights[4] = is4;
+    weights[5] = is5;
+    weights[6] = is6;
+    weights[7] = is7;
+    weights[8] = is8;
+    weights[9] = is9;
+
+    if (event.shouldCommit()) {
+      event.setWeights(weights);
+      event.commit();
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+package main;
+
+/**
+ * An engine that predicts which digit is drawn in an image. The hand-written figure rules (DigitClassifier) and the
+ * trained templates (TemplateClassifier) are both DigitRecognizers, so either can be plugged into the windows,
+ * the batch classifier or the benchmarks.
+ */
+public interface DigitRecognizer {
+
+  /**
+   * Classifies the drawing stored in the given VisionBoard, keeping every weight so it can be displayed.
+   * @param vBoard the VisionBoard to classify
+   * @return the result of the classification
+   */
+  ClassificationResult classify(VisionBoard vBoard);
+
+  /**
+   * Classifies the drawing stored in the given VisionBoard, whose grid the caller already generated (for example to
+   * display it). Recognizers that work from the grid use it rather than generating it again and ignore the
+   * VisionBoard, which is only here for the others (like TemplateClassifier) that classify the VisionBoard as it is.
+   * @param vBoard the VisionBoard to classify, which recognizers that work from the grid do not read
+   * @param grid the grid generated from vBoard at getGridSize(), which is left unchanged
+   * @return the result of the classification
+   */
+  default ClassificationResult classify(VisionBoard vBoard, LayerOne grid) {
+    return this.classify(vBoard);
+  }
+
+  /**
+   * Classifies the given image into an existing result, keeping every weight, using only the working memory in the
+   * given Scratch, so that nothing is allocated once the Scratch has warmed up.
+   * @param source the image to classify
+   * @param scratch the working memory to use, which must not be shared between threads
+   * @param result the result to overwrite, which must be one the caller created rather than one returned by classify
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to process
+   */
+  void classify(PixelSource source, Scratch scratch, ClassificationResult result);
+
+  /**
+   * Predicts the digit drawn in the given image using only the working memory in the given Scratch,
+   * so that nothing is allocated once the Scratch has warmed up.
+   * @param source the image to classify
+   * @param scratch the working memory to use, which must not be shared between threads
+   * @return the predicted digit
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to process
+   */
+  int predict(PixelSource source, Scratch scratch);
+
+  /**
+   * Predicts the digit from the figure weights of a drawing alone, for callers that keep the figures up to date
+   * themselves as a drawing changes (see LiveGrid). Recognizers that need more of the drawing than its figures
+   * return -1, and the caller should use predict instead.
+   * @param figures the weights of figures A through S over a grid of getGridSize(), which are left unchanged
+   * @param scratch the working memory to use, which must not be shared between threads
+   * @return the predicted digit, or -1 if this recognizer cannot predict from the figures
+   */
+  default int predictFigures(double[] figures, Scratch scratch) {
+    return -1;
+  }
+
+  /**
+   * Returns the width (and height) of the grid this recognizer simplifies drawings to, which the drawing window
+   * outlines over the drawing.
+   * @return the grid size
+   */
+  default int getGridSize() {
+    return LayerOne.DEFAULT_SIZE;
+  }
+
+}
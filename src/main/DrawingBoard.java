@@ -1,28 +1,61 @@
 package main;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * DrawingBoard is the object that drawing is actually done on.
  */
-public class DrawingBoard {
+public class DrawingBoard implements PixelSource {
 
-  ArrayList<ArrayList<Boolean>> board; // Indices are (col, row) from top left (0,0) to bottom right
+  public static final int DEFAULT_SIZE = 50; // The width (and height) of the drawing window's board
+  public static final int MNIST_SIZE = 28; // The width (and height) of an MNIST image, so drawings need no resampling
 
-  public DrawingBoard() {
+  // Each row of the board is packed into longs, one bit per cell. Bit (col % 64) of word
+  // (row * wordsPerRow + col / 64) holds the cell at (col, row), from top left (0,0) to bottom right.
+  private final long[] bits;
+  private final int wordsPerRow;
+  private final int size; // The width (and height) of the board
+  private int activeCount; // The amount of active cells, kept up to date as the board is drawn on
+  private long modCount; // Goes up every time a cell actually changes, so readers can tell when to rebuild
 
-    // Create a 2D matrix with all false values to represent each cell
-    ArrayList<ArrayList<Boolean>> fullBoard = new ArrayList<>();
+  // The tight bounds of every active cell, kept up to date as the board is drawn on. Only meaningful when not empty
+  private int minCol;
+  private int maxCol;
+  private int minRow;
+  private int maxRow;
 
-    for (int col = 0; col < PaintPanel.SCALE; col += 1) {
-      ArrayList<Boolean> nextRow = new ArrayList<>();
-      for (int row = 0; row < PaintPanel.SCALE; row += 1) {
-        nextRow.add(false);
-      }
-      fullBoard.add(nextRow);
+  /**
+   * Creates an empty board of the default size.
+   */
+  public DrawingBoard() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * Creates an empty board of the given size. Memory and the cost of every scan grow with the size, so a board
+   * should be no larger than the detail it needs: MNIST_SIZE to match the dataset, larger for high resolution input.
+   * @param size the width (and height) of the board
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  public DrawingBoard(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("A DrawingBoard must have at least one cell");
     }
 
-    this.board = fullBoard;
+    // Every cell starts out false
+    this.size = size;
+    this.wordsPerRow = (size + 63) >>> 6;
+    this.bits = new long[size * this.wordsPerRow];
+    this.activeCount = 0;
+    this.clearBounds();
+  }
+
+  /**
+   * Returns the width (and height) of this board.
+   * @return the number of cells along each side
+   */
+  public int size() {
+    return this.size;
   }
 
   /**
@@ -32,7 +65,47 @@ public class DrawingBoard {
    * @return the boolean value stored in the grid
    */
   public boolean getVal(int col, int row) {
-    return this.board.get(col).get(row);
+    this.checkBounds(col, row);
+    return (this.bits[row * this.wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /**
+   * Returns a run of up to 64 cells from one row, packed into a long with bit i holding (col + i, row).
+   * @param col the first column of the run
+   * @param row the row to read
+   * @param len the amount of cells to read, from 1 to 64
+   * @return the packed cells
+   */
+  public long getBits(int col, int row, int len) {
+    this.checkBounds(col, row);
+    this.checkBounds(col + len - 1, row);
+
+    // The run may straddle two words, in which case the high part comes from the next word
+    int idx = row * this.wordsPerRow + (col >>> 6);
+    int shift = col & 63;
+    long run = this.bits[idx] >>> shift;
+    if (shift != 0 && shift + len > 64) {
+      run |= this.bits[idx + 1] << (64 - shift);
+    }
+    return len == 64 ? run : run & ((1L << len) - 1);
+  }
+
+  /**
+   * Returns one packed word of a row. Bit i holds the cell at (word * 64 + i, row).
+   * @param row the row to read
+   * @param word which word of the row to read
+   * @return the packed cells
+   */
+  public long getRowWord(int row, int word) {
+    return this.bits[row * this.wordsPerRow + word];
+  }
+
+  /**
+   * Returns the amount of words used to store each row.
+   * @return the words per row
+   */
+  public int getWordsPerRow() {
+    return this.wordsPerRow;
   }
 
   /**
@@ -42,11 +115,154 @@ public class DrawingBoard {
    * @param val the value (draw/erase) to use
    */
   public void setVal(int col, int row, boolean val) {
-    this.board.get(col).set(row, val);
-    this.board.get(boundOut(col + 1)).set(row, val);
-    this.board.get(boundOut(col - 1)).set(row, val);
-    this.board.get(col).set(boundOut(row + 1), val);
-    this.board.get(col).set(boundOut(row - 1), val);
+    this.checkBounds(col, row);
+
+    int left = boundOut(col - 1);
+    int right = boundOut(col + 1);
+    int top = boundOut(row - 1);
+    int bottom = boundOut(row + 1);
+
+    // The brush is a plus shape: a run of three cells across the middle row and a single cell above and below
+    boolean changed = this.writeRun(row, left, right, val);
+    changed |= this.writeRun(top, col, col, val);
+    changed |= this.writeRun(bottom, col, col, val);
+
+    if (!changed) {
+      return;
+    }
+    this.modCount += 1;
+
+    if (val) {
+      // Drawing can only ever grow the bounds
+      this.minCol = Math.min(this.minCol, left);
+      this.maxCol = Math.max(this.maxCol, right);
+      this.minRow = Math.min(this.minRow, top);
+      this.maxRow = Math.max(this.maxRow, bottom);
+    }
+    else if (this.activeCount == 0) {
+      this.clearBounds();
+    }
+    else if (left <= this.minCol || right >= this.maxCol || top <= this.minRow || bottom >= this.maxRow) {
+      // Erasing only moves the bounds if the brush reached one of them
+      this.rescanBounds();
+    }
+  }
+
+  /**
+   * Erases the whole board.
+   */
+  public void clear() {
+    if (this.activeCount == 0) {
+      return;
+    }
+    Arrays.fill(this.bits, 0L);
+    this.activeCount = 0;
+    this.modCount += 1;
+    this.clearBounds();
+  }
+
+  /**
+   * Replaces one packed word of a row, for readers that fill a whole board at once (see BoardCodec).
+   * Cells past the edge of the board are ignored. The bounds are left as they were until refreshBounds is called.
+   * @param row the row to write
+   * @param word which word of the row to write
+   * @param bits the cells, bit i holding the cell at (word * 64 + i, row)
+   */
+  void setRowWord(int row, int word, long bits) {
+    int past = this.size - (word << 6); // Cells of this word that are on the board
+    if (past < 64) {
+      bits &= (1L << past) - 1;
+    }
+    int idx = row * this.wordsPerRow + word;
+    long old = this.bits[idx];
+    if (old != bits) {
+      this.activeCount += Long.bitCount(bits) - Long.bitCount(old);
+      this.bits[idx] = bits;
+      this.modCount += 1;
+    }
+  }
+
+  /**
+   * Recomputes the bounds after cells were written with setRowWord or fillRun.
+   */
+  void refreshBounds() {
+    if (this.activeCount == 0) {
+      this.clearBounds();
+    }
+    else {
+      this.rescanBounds();
+    }
+  }
+
+  /**
+   * Activates every cell from the first to the last column (inclusive) of a row, for readers that fill a whole
+   * board at once. The bounds are left as they were until refreshBounds is called.
+   * @param row the row to write
+   * @param first the first column to activate
+   * @param last the last column to activate
+   */
+  void fillRun(int row, int first, int last) {
+    if (this.writeRun(row, first, last, true)) {
+      this.modCount += 1;
+    }
+  }
+
+  /**
+   * Resets the bounds to their empty state, so that the next cell drawn becomes the whole bounds.
+   */
+  private void clearBounds() {
+    this.minCol = this.size;
+    this.maxCol = -1;
+    this.minRow = this.size;
+    this.maxRow = -1;
+  }
+
+  /**
+   * Recomputes the bounds from scratch. The rows are OR'd together so the columns in use can be read off
+   * each word with a single bit scan.
+   */
+  private void rescanBounds() {
+    this.clearBounds();
+    for (int word = 0; word < this.wordsPerRow; word += 1) {
+      long used = 0L;
+      for (int row = 0; row < this.size; row += 1) {
+        long bits = this.bits[row * this.wordsPerRow + word];
+        if (bits != 0) {
+          used |= bits;
+          this.minRow = Math.min(this.minRow, row);
+          this.maxRow = Math.max(this.maxRow, row);
+        }
+      }
+      if (used != 0) {
+        this.minCol = Math.min(this.minCol, (word << 6) + Long.numberOfTrailingZeros(used));
+        this.maxCol = Math.max(this.maxCol, (word << 6) + 63 - Long.numberOfLeadingZeros(used));
+      }
+    }
+  }
+
+  /**
+   * Sets every cell from the first to the last column (inclusive) of a row, a whole word at a time.
+   * @param row the row to write
+   * @param first the first column to write
+   * @param last the last column to write
+   * @param val the value (draw/erase) to use
+   * @return whether any cell actually changed
+   */
+  private boolean writeRun(int row, int first, int last, boolean val) {
+    boolean changed = false;
+    for (int word = first >>> 6; word <= last >>> 6; word += 1) {
+      int lo = Math.max(first, word << 6) & 63;
+      int hi = Math.min(last, (word << 6) + 63) & 63;
+      long mask = (-1L >>> (63 - hi)) & (-1L << lo);
+
+      int idx = row * this.wordsPerRow + word;
+      long old = this.bits[idx];
+      long updated = val ? old | mask : old & ~mask;
+      this.activeCount += Long.bitCount(updated) - Long.bitCount(old);
+      this.bits[idx] = updated;
+      changed |= updated != old;
+    }
+    return changed;
   }
 
   /**
@@ -59,33 +275,67 @@ public class DrawingBoard {
     if (val < 0) {
       return 0;
     }
-    else if (val > PaintPanel.SCALE - 1) {
-      return PaintPanel.SCALE - 1; // Since our grid is square, we don't need to compare width or height, the scale is enough
+    else if (val > this.size - 1) {
+      return this.size - 1; // Since our grid is square, we don't need to compare width or height, the size is enough
     }
     return val;
   }
-  
+
+  /**
+   * Makes sure the given indices are inside the board, since the packed words have room for cells that don't exist.
+   * @param col the column to check
+   * @param row the row to check
+   * @throws IndexOutOfBoundsException if the cell is not on the board
+   */
+  private void checkBounds(int col, int row) {
+    if (col < 0 || row < 0 || col >= this.size || row >= this.size) {
+      throw new IndexOutOfBoundsException("Cell (" + col + ", " + row + ") is outside the board");
+    }
+  }
+
   /**
    * Determines if this grid is completely empty (erased).
    * @return whether the grid is empty
    */
   public boolean isEmpty() {
-    for (int col = 0; col < PaintPanel.SCALE; col += 1) {
-      for (int row = 0; row < PaintPanel.SCALE; row += 1) {
-        if (this.board.get(col).get(row)) { // If any one value in the grid is not false, then the grid is not empty
-          return false;
-        }
-      }
+    return this.activeCount == 0;
+  }
+
+  /**
+   * Returns the amount of active cells on this board.
+   * @return the amount of active cells
+   */
+  public int getActiveCount() {
+    return this.activeCount;
+  }
+
+  /**
+   * Returns how many times this board has changed. Strokes that change no cell are not counted.
+   * @return the modification count
+   */
+  public long getModCount() {
+    return this.modCount;
+  }
+
+  /**
+   * Returns the square region around every active cell. The bounds are tracked as the board is drawn on,
+   * so this does not need to scan the board.
+   * @return the CropRect of this board
+   * @throws IllegalArgumentException if the board is empty
+   */
+  public CropRect getCrop() {
+    if (this.isEmpty()) {
+      throw new IllegalArgumentException("There is no drawing");
     }
-    return true;
+    return CropRect.fromBounds(this.minCol, this.maxCol, this.minRow, this.maxRow, this.size);
   }
-  
+
   /**
    * Creates a new VisionBoard given this board as a percept.
    * @return the VisionBoard that holds this DrawingBoard.
    */
   public VisionBoard makeVisionBoard() {
-    return new VisionBoard(this.board);
+    return new VisionBoard(this);
   }
 
 }
@@ -0,0 +1,373 @@
+package main;
+
+/**
+ * A FigureRule assesses the likelihood that a given figure may be in the digit, by reading cells of a LayerOne grid.
+ * Weight values are arbitrary and were adjusted as I saw fit in order to make the program work.
+ * This could have been done using some sort of ML algorithm like linear perceptron, but I wanted to
+ * experiment myself and see how close I could get it without offloading the work.
+ *
+ * Each figure is given an arbitrary letter to symbolize it. These were chosen simply to facilitate adjustments
+ * and Layer 2-3 processing when writing code. Each rule in the table has above it a note of what it actually represents.
+ *
+ * See the attached image in the README for a breakdown of each figure and which numbers they are commonly found in
+ *
+ * They commonly work as follows:
+ * 1. If the cells that are most frequently a part of that figure are completely deactivated, then that
+ *    figure must not be present, return 0.
+ * 2. Then, if the cells on the edge of that figure are completely empty, then that figure is likely somewhat present,
+ *    but we lower the scaling of the weights so the confidence is lower.
+ * 3. Otherwise, the figure is likely quite prominent, so we return a fairly highly weighted value for it.
+ *
+ * Every rule is written as data in that same shape, so one loop can evaluate all of them over a flat grid.
+ */
+public class FigureRule {
+
+  // The figures are laid out on the drawing divided into fifths each way, so cell (col, row) of a rule is the region
+  // from col / 5 to (col + 1) / 5 across and row / 5 to (row + 1) / 5 down. A grid of any other size is averaged onto
+  // those regions before the rules read it (see LayerOne)
+  public static final int GRID_SIZE = 5;
+
+  // Cell limits. A cell "is at" a limit when its value is less than or equal to it. Since cells are never negative,
+  // being at EMPTY means the cell is 0, and being at FAINT means the cell is below 0.4
+  private static final double EMPTY = 0.0;
+  private static final double FAINT = Math.nextDown(0.4);
+  private static final double WEAK = 0.2;
+  private static final int[] NONE = {};
+
+  // Coefficients for the three cells at the core of a figure, from least to most confident
+  private static final double[] LOW = {0.5, 0.8, 0.5};
+  private static final double[] MID = {1, 1.1, 1};
+  private static final double[] HIGH = {1.1, 1.3, 1.1};
+
+  private final int[][] absentCells; // The figure is absent if every cell of any one of these groups is at its limit
+  private final double[][] absentLimits;
+  private final Tier[] tiers; // The first tier whose check passes gives the weight, the last tier always passes
+  private final int cells; // Every cell the rule reads, bit i set for cell i
+
+  /**
+   * Creates a FigureRule.
+   * @param absentCells groups of cells, the figure is absent if every cell of any one group is at its limit
+   * @param absentLimits the limit of each of those cells
+   * @param tiers the tiers to try in order, the last of which is used when no other applies
+   */
+  public FigureRule(int[][] absentCells, double[][] absentLimits, Tier[] tiers) {
+    this.absentCells = absentCells;
+    this.absentLimits = absentLimits;
+    this.tiers = tiers;
+
+    int read = 0;
+    for (int[] group : absentCells) {
+      read |= mask(group);
+    }
+    for (Tier tier : tiers) {
+      read |= mask(tier.checkCells);
+      for (Sum sum : tier.sums) {
+        read |= mask(sum.cells) | mask(sum.bonusCells);
+      }
+    }
+    this.cells = read;
+  }
+
+  /**
+   * Returns every cell this rule reads, so a grid that changed in only a few cells need only be evaluated by the
+   * rules that read them.
+   * @return the cells, bit i set for cell i of the grid in fifths
+   */
+  public int getCells() {
+    return this.cells;
+  }
+
+  /**
+   * Calculates the weight of this figure.
+   * @param grid the grid in fifths, cell (col, row) at index col * GRID_SIZE + row
+   * @return the estimated weight of this figure
+   */
+  public double evaluate(double[] grid) {
+    for (int group = 0; group < this.absentCells.length; group += 1) {
+      int[] cells = this.absentCells[group];
+      double[] limits = this.absentLimits[group];
+      boolean absent = true;
+      for (int idx = 0; idx < cells.length && absent; idx += 1) {
+        absent = grid[cells[idx]] <= limits[idx];
+      }
+      if (absent) {
+        return 0.0;
+      }
+    }
+
+    int last = this.tiers.length - 1;
+    for (int tier = 0; tier < last; tier += 1) {
+      if (this.tiers[tier].applies(grid)) {
+        return this.tiers[tier].weigh(grid);
+      }
+    }
+    return this.tiers[last].weigh(grid);
+  }
+
+  /**
+   * One level of confidence in a figure. A tier applies when any of its check cells is at the check limit,
+   * and its weight is the highest of its sums.
+   */
+  public static class Tier {
+
+    private final int[] checkCells;
+    private final double checkLimit;
+    private final Sum[] sums;
+
+    /**
+     * Creates a Tier.
+     * @param checkCells the cells to check
+     * @param checkLimit the limit that any one of those cells must be at for this tier to apply
+     * @param sums the sums whose highest value is the weight of the figure
+     */
+    public Tier(int[] checkCells, double checkLimit, Sum... sums) {
+      this.checkCells = checkCells;
+      this.checkLimit = checkLimit;
+      this.sums = sums;
+    }
+
+    /**
+     * Determines whether this tier applies to the given grid.
+     * @param grid the grid in fifths
+     * @return whether any check cell is at the check limit
+     */
+    boolean applies(double[] grid) {
+      for (int idx = 0; idx < this.checkCells.length; idx += 1) {
+        if (grid[this.checkCells[idx]] <= this.checkLimit) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Calculates the weight this tier gives the figure.
+     * @param grid the grid in fifths
+     * @return the highest of this tier's sums
+     */
+    double weigh(double[] grid) {
+      double best = this.sums[0].total(grid);
+      for (int idx = 1; idx < this.sums.length; idx += 1) {
+        best = Math.max(best, this.sums[idx].total(grid));
+      }
+      return best;
+    }
+
+  }
+
+  /**
+   * A weighted sum of cells, plus an optional bonus of one fifth of two more cells.
+   */
+  public static class Sum {
+
+    private final int[] cells;
+    private final double[] coefficients;
+    private final int[] bonusCells; // Either empty or two cells
+
+    /**
+     * Creates a Sum.
+     * @param cells the cells to add up
+     * @param coefficients the coefficient of each of those cells
+     * @param bonusCells two cells whose total is added at one fifth, or none
+     */
+    public Sum(int[] cells, double[] coefficients, int[] bonusCells) {
+      this.cells = cells;
+      this.coefficients = coefficients;
+      this.bonusCells = bonusCells;
+    }
+
+    /**
+     * Calculates this sum. The terms are added in order, so the result is exactly what the written out
+     * expression (a * x + b * y + c * z + (p + q) / 5.0) would give.
+     * @param grid the grid in fifths
+     * @return the value of this sum
+     */
+    double total(double[] grid) {
+      double total = 0.0;
+      for (int idx = 0; idx < this.cells.length; idx += 1) {
+        total += grid[this.cells[idx]] * this.coefficients[idx];
+      }
+      if (this.bonusCells.length != 0) {
+        total += (grid[this.bonusCells[0]] + grid[this.bonusCells[1]]) / 5.0;
+      }
+      return total;
+    }
+
+  }
+
+  /**
+   * Converts (col, row) pairs of fifths into indices of the flat 5x5 grid.
+   * @param colRows the column and row of each cell, one after another
+   * @return the index of each cell
+   */
+  private static int[] cells(int... colRows) {
+    int[] cells = new int[colRows.length / 2];
+    for (int idx = 0; idx < cells.length; idx += 1) {
+      cells[idx] = colRows[idx * 2] * GRID_SIZE + colRows[idx * 2 + 1];
+    }
+    return cells;
+  }
+
+  /**
+   * Turns indices of the flat 5x5 grid into a bit set.
+   * @param cells the indices
+   * @return the bit set, bit i set for cell i
+   */
+  private static int mask(int[] cells) {
+    int mask = 0;
+    for (int cell : cells) {
+      mask |= 1 << cell;
+    }
+    return mask;
+  }
+
+  /**
+   * Creates absent groups of a single cell each, so the figure is absent when any one of the cells is at its limit.
+   * @param cells the cells
+   * @return the groups
+   */
+  private static int[][] each(int[] cells) {
+    int[][] groups = new int[cells.length][];
+    for (int idx = 0; idx < cells.length; idx += 1) {
+      groups[idx] = new int[] {cells[idx]};
+    }
+    return groups;
+  }
+
+  /**
+   * Creates the limits matching absent groups of a single cell each.
+   * @param limits the limit of each group
+   * @return the limits
+   */
+  private static double[][] limits(double... limits) {
+    double[][] groups = new double[limits.length][];
+    for (int idx = 0; idx < limits.length; idx += 1) {
+      groups[idx] = new double[] {limits[idx]};
+    }
+    return groups;
+  }
+
+  /**
+   * Creates a rule with a single tier, the shape used by the forks, legs and roofs.
+   * @param absent the cells that make the figure absent when any one is empty
+   * @param sums the sums whose highest value is the weight of the figure
+   * @return the rule
+   */
+  private static FigureRule simple(int[] absent, Sum... sums) {
+    return new FigureRule(each(absent), limits(new double[absent.length]), new Tier[] {new Tier(NONE, EMPTY, sums)});
+  }
+
+  /**
+   * Creates a rule in the usual three tier shape of a straight line: three core cells and two end cells.
+   * With an empty end only the core counts, with a faint end the core counts more and the ends add a bonus,
+   * and otherwise the core counts the most.
+   * @param absent the cells that make the figure absent when any one is empty
+   * @param core the three core cells of the figure
+   * @param ends the two end cells of the figure
+   * @return the rule
+   */
+  private static FigureRule line(int[] absent, int[] core, int[] ends) {
+    return new FigureRule(each(absent), limits(new double[absent.length]), new Tier[] {
+        new Tier(ends, EMPTY, new Sum(core, LOW, NONE)),
+        new Tier(ends, FAINT, new Sum(core, MID, ends)),
+        new Tier(NONE, EMPTY, new Sum(core, HIGH, ends))});
+  }
+
+  /**
+   * Every figure, index 0 for A through 18 for S. Some rules read cells that break the pattern of their figure,
+   * those were part of the hand tuned weights and are kept exactly as they were.
+   */
+  public static final FigureRule[] FIGURES = {
+
+    // A: BOTTOM HORIZONTAL
+    line(cells(1, 4, 3, 4), cells(1, 4, 2, 4, 3, 4), cells(0, 4, 4, 4)),
+
+    // B: TOP HORIZONTAL
+    line(cells(1, 0, 2, 0, 3, 0), cells(1, 0, 2, 0, 3, 0), cells(0, 0, 4, 0)),
+
+    // C: RIGHT VERTICAL (the most confident tier takes its bonus from (4,4) rather than (3,4))
+    new FigureRule(each(cells(3, 1, 3, 3)), limits(EMPTY, EMPTY), new Tier[] {
+        new Tier(cells(3, 0, 3, 4), EMPTY, new Sum(cells(3, 1, 3, 2, 3, 3), LOW, NONE)),
+        new Tier(cells(3, 0, 3, 4), FAINT, new Sum(cells(3, 1, 3, 2, 3, 3), MID, cells(3, 0, 3, 4))),
+        new Tier(NONE, EMPTY, new Sum(cells(3, 1, 3, 2, 3, 3), HIGH, cells(3, 0, 4, 4)))}),
+
+    // D: CENTER VERTICAL
+    line(cells(2, 1, 2, 3), cells(2, 1, 2, 2, 2, 3), cells(2, 0, 2, 4)),
+
+    // E: DIAGONAL (2,4) to (3, 0) or (1,4) to (3,0)
+    // Absent when (3,1) and either lower cell are weak. The faint check reads the far corners (0,4) and (4,0)
+    new FigureRule(new int[][] {cells(2, 3, 3, 1), cells(1, 3, 3, 1)}, new double[][] {{WEAK, WEAK}, {WEAK, WEAK}},
+        new Tier[] {
+        new Tier(cells(2, 4, 3, 0), EMPTY,
+            new Sum(cells(2, 3, 2, 2, 3, 1), LOW, NONE),
+            new Sum(cells(1, 3, 2, 2, 3, 1), LOW, NONE)),
+        new Tier(cells(0, 4, 4, 0), FAINT,
+            new Sum(cells(2, 3, 2, 2, 3, 1), MID, cells(2, 4, 3, 0)),
+            new Sum(cells(1, 3, 2, 2, 3, 1), MID, cells(1, 4, 3, 0))),
+        new Tier(NONE, EMPTY,
+            new Sum(cells(2, 3, 2, 2, 3, 1), HIGH, cells(2, 4, 3, 0)),
+            new Sum(cells(1, 3, 2, 2, 3, 1), HIGH, cells(1, 4, 3, 0)))}),
+
+    // F: CENTER HORIZONTAL (the least confident tier leans more on the outer core cells)
+    new FigureRule(each(cells(1, 2, 3, 2)), limits(EMPTY, EMPTY), new Tier[] {
+        new Tier(cells(0, 2, 4, 2), EMPTY, new Sum(cells(1, 2, 2, 2, 3, 2), new double[] {0.75, 1, 0.75}, NONE)),
+        new Tier(cells(0, 2, 4, 2), FAINT, new Sum(cells(1, 2, 2, 2, 3, 2), MID, cells(0, 2, 4, 2))),
+        new Tier(NONE, EMPTY, new Sum(cells(1, 2, 2, 2, 3, 2), HIGH, cells(0, 2, 4, 2)))}),
+
+    // G: LEFT FORK
+    simple(cells(1, 0, 1, 1), new Sum(cells(1, 0, 1, 1, 1, 2), LOW, NONE)),
+
+    // H: LEFT LEG
+    simple(cells(1, 3, 1, 4),
+        new Sum(cells(1, 2, 1, 3, 1, 4), LOW, NONE),
+        new Sum(cells(0, 2, 0, 3, 0, 4), LOW, NONE)),
+
+    // I: TOPLEFT ROOF
+    simple(cells(0, 0, 1, 0, 2, 0), new Sum(cells(0, 0, 1, 0, 2, 0), LOW, NONE)),
+
+    // J: LEFT CURVE
+    line(cells(1, 1, 1, 3), cells(1, 1, 1, 2, 1, 3), cells(2, 0, 2, 4)),
+
+    // K: CENTER RIGHT CURVE (the most confident tier takes its bonus from (2,4) rather than (3,4))
+    new FigureRule(each(cells(2, 1, 2, 3)), limits(EMPTY, EMPTY), new Tier[] {
+        new Tier(cells(3, 0, 3, 4), EMPTY, new Sum(cells(2, 1, 2, 2, 2, 3), LOW, NONE)),
+        new Tier(cells(3, 0, 3, 4), FAINT, new Sum(cells(2, 1, 2, 2, 2, 3), MID, cells(3, 0, 3, 4))),
+        new Tier(NONE, EMPTY, new Sum(cells(2, 1, 2, 2, 2, 3), HIGH, cells(3, 0, 2, 4)))}),
+
+    // L: TOPCENTER ROOF
+    new FigureRule(each(cells(2, 0, 1, 0, 2, 0, 3, 0)), limits(WEAK, EMPTY, EMPTY, EMPTY), new Tier[] {
+        new Tier(NONE, EMPTY, new Sum(cells(1, 0, 2, 0, 3, 0), new double[] {0.3, 0.5, 0.3}, NONE))}),
+
+    // M: RIGHT LEG
+    simple(cells(3, 3, 3, 4),
+        new Sum(cells(3, 2, 3, 3, 3, 4), LOW, NONE),
+        new Sum(cells(4, 2, 4, 3, 4, 4), LOW, NONE)),
+
+    // N: DIAGONAL (1,0) to (3, 4)
+    new FigureRule(each(cells(1, 1, 2, 2, 3, 3)), limits(WEAK, FAINT, WEAK), new Tier[] {
+        new Tier(cells(1, 0, 3, 4), EMPTY, new Sum(cells(1, 1, 2, 2, 3, 3), LOW, NONE)),
+        new Tier(cells(1, 0, 3, 4), FAINT, new Sum(cells(1, 1, 2, 2, 3, 3), MID, cells(1, 0, 3, 4))),
+        new Tier(NONE, EMPTY, new Sum(cells(1, 1, 2, 2, 3, 3), HIGH, cells(1, 0, 3, 4)))}),
+
+    // O: MID-HIGH CENTER ROOF
+    new FigureRule(each(cells(2, 1, 1, 1, 2, 1, 3, 1)), limits(WEAK, EMPTY, EMPTY, EMPTY), new Tier[] {
+        new Tier(NONE, EMPTY, new Sum(cells(1, 1, 2, 1, 3, 1), new double[] {0.3, 0.5, 0.3}, NONE))}),
+
+    // P: RIGHT FORK
+    simple(cells(3, 0, 3, 1), new Sum(cells(3, 0, 3, 1, 3, 2), LOW, NONE)),
+
+    // Q: TOPLEFT CURVE (on a 2), which is never absent
+    simple(NONE, new Sum(cells(0, 1, 0, 0, 1, 0), LOW, NONE)),
+
+    // R: FAR LEFT VERTICAL (only used in detecting zeroes)
+    line(cells(0, 1, 0, 3), cells(0, 1, 0, 2, 0, 3), cells(0, 0, 0, 4)),
+
+    // S: FAR RIGHT VERTICAL (only used in detecting zeroes)
+    // The middle tier reads (0,3) in place of (4,3), and the most confident tier's bonus reads (0,4) in place of (4,4)
+    new FigureRule(each(cells(4, 1, 4, 3)), limits(EMPTY, EMPTY), new Tier[] {
+        new Tier(cells(4, 0, 4, 4), EMPTY, new Sum(cells(4, 1, 4, 2, 4, 3), LOW, NONE)),
+        new Tier(cells(4, 0, 4, 4), FAINT, new Sum(cells(4, 1, 4, 2, 0, 3), MID, cells(4, 0, 4, 4))),
+        new Tier(NONE, EMPTY, new Sum(cells(4, 1, 4, 2, 4, 3), HIGH, cells(4, 0, 0, 4)))})
+  };
+
+}
@@ -0,0 +1,93 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Reports what each grid size costs and what it buys: the figure rules are run over a labelled dataset at every
+ * resolution in SIZES, printing the accuracy and the time one thread takes to classify a sample. The figure rules
+ * read every grid averaged back onto fifths, so a finer grid shows them no more detail; the accuracy only moves
+ * because cells that straddle two fifths are split between them.
+ */
+public class GridReport {
+
+  public static final int[] SIZES = {5, 7, 10, 14}; // The grid sizes worth deploying
+  private static final int WARMUP_PASSES = 2; // Passes over the dataset before timing, so the JIT has settled
+
+  /**
+   * Prints the accuracy and cost of every grid size.
+   * @param args the images and labels to classify, as IDX files
+   * @throws IOException if either file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: GridReport <images> <labels>");
+      return;
+    }
+
+    IdxDataset dataset = IdxDataset.open(Paths.get(args[0]), Paths.get(args[1]));
+    if (dataset.size() == 0) {
+      System.out.println("The dataset has no samples to classify");
+      return;
+    }
+    System.out.println("The figures read every grid averaged back onto 5x5, so finer grids add no detail for them");
+    DigitClassifier[] classifiers = new DigitClassifier[SIZES.length];
+    Scratch scratch = new Scratch();
+    IdxDataset.Sample sample = dataset.new Sample();
+
+    // Warm every size up before timing any of them, so the first size is not measured while the shared code compiles
+    for (int idx = 0; idx < SIZES.length; idx += 1) {
+      classifiers[idx] = new DigitClassifier(SIZES[idx]);
+      for (int pass = 0; pass < WARMUP_PASSES; pass += 1) {
+        classifyAll(classifiers[idx], dataset, sample, scratch);
+      }
+    }
+    for (DigitClassifier classifier : classifiers) {
+      report(classifier, dataset, sample, scratch);
+    }
+  }
+
+  /**
+   * Classifies every sample of a dataset on one thread and prints how accurate and how fast that was.
+   * @param classifier the classifier to evaluate
+   * @param dataset the labelled samples to test on, of which there must be at least one
+   * @param sample the view to read each sample through
+   * @param scratch the working memory to classify with
+   */
+  private static void report(DigitClassifier classifier, IdxDataset dataset, IdxDataset.Sample sample,
+      Scratch scratch) {
+    long start = System.nanoTime();
+    int correct = classifyAll(classifier, dataset, sample, scratch);
+    long elapsed = System.nanoTime() - start;
+
+    int size = classifier.getGridSize();
+    System.out.println(size + "x" + size + ": " + (100.0 * correct / dataset.size()) + "% correct, "
+        + (elapsed / dataset.size()) + " ns per sample");
+  }
+
+  /**
+   * Classifies every sample of a dataset in order.
+   * @param classifier the classifier to run
+   * @param dataset the labelled samples
+   * @param sample the view to read each sample through
+   * @param scratch the working memory to classify with
+   * @return the amount of samples predicted correctly
+   */
+  private static int classifyAll(DigitClassifier classifier, IdxDataset dataset, IdxDataset.Sample sample,
+      Scratch scratch) {
+    int correct = 0;
+    for (int index = 0; index < dataset.size(); index += 1) {
+      sample.moveTo(index);
+      try {
+        if (classifier.predict(sample, scratch) == dataset.getLabel(index)) {
+          correct += 1;
+        }
+      }
+      catch (IllegalArgumentException e) {
+        // An empty or too small drawing counts as a wrong prediction
+      }
+    }
+    return correct;
+  }
+
+}
@@ -0,0 +1,90 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often values of each size were seen, in buckets that double in width: 0, 1, 2-3, 4-7, 8-15 and so on.
+ * Recording is a couple of atomic increments, so any amount of threads can record without locking.
+ */
+public class Histogram {
+
+  private static final int BUCKETS = 64; // Bucket b > 0 holds values from 2^(b-1) to 2^b - 1
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder(); // The sum of every value recorded, for the mean
+
+  /**
+   * Records one value.
+   * @param value the value, counted as 0 if negative
+   */
+  public void record(long value) {
+    this.counts.incrementAndGet(bucket(value));
+    this.total.add(Math.max(value, 0));
+  }
+
+  /**
+   * Returns how many values have been recorded.
+   * @return the amount of values
+   */
+  public long getCount() {
+    long count = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket += 1) {
+      count += this.counts.get(bucket);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the mean of every value recorded.
+   * @return the mean, or 0 if nothing has been recorded
+   */
+  public double getMean() {
+    long count = this.getCount();
+    return count == 0 ? 0.0 : (double) this.total.sum() / count;
+  }
+
+  /**
+   * Returns how many values fell in the bucket that holds the given value.
+   * @param value any value in the bucket
+   * @return the amount of values in that bucket
+   */
+  public long getBucketCount(long value) {
+    return this.counts.get(bucket(value));
+  }
+
+  /**
+   * Finds the bucket a value falls in.
+   * @param value the value
+   * @return the bucket, 0 for 0 (or less) and 1 + floor(log2(value)) otherwise
+   */
+  private static int bucket(long value) {
+    return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Lists every bucket that has been used, for example "1: 12, 2-3: 40, 4-7: 3 (mean 2.5)".
+   * @return the summary
+   */
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (int bucket = 0; bucket < BUCKETS; bucket += 1) {
+      long count = this.counts.get(bucket);
+      if (count == 0) {
+        continue;
+      }
+      if (text.length() > 0) {
+        text.append(", ");
+      }
+      long low = bucket == 0 ? 0 : 1L << (bucket - 1);
+      long high = bucket == 0 ? 0 : (low << 1) - 1;
+      text.append(low);
+      if (high != low) {
+        text.append('-').append(high);
+      }
+      text.append(": ").append(count);
+    }
+    return text.append(" (mean ").append(this.getMean()).append(')').toString();
+  }
+
+}
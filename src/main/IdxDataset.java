@@ -0,0 +1,243 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads labelled samples from a pair of MNIST IDX files (for example train-images-idx3-ubyte and
+ * train-labels-idx1-ubyte). Both files are memory mapped, so samples are read straight out of the page cache
+ * without being copied onto the heap, and the whole dataset can be streamed with constant memory use.
+ */
+public class IdxDataset {
+
+  public static final int IMAGE_MAGIC = 0x00000803; // unsigned byte data, 3 dimensions
+  public static final int LABEL_MAGIC = 0x00000801; // unsigned byte data, 1 dimension
+  public static final int DEFAULT_THRESHOLD = 128; // The grayscale value at which a pixel counts as drawn
+  private static final int IMAGE_HEADER = 16; // The magic number, then the amount of samples, rows and columns
+  private static final int LABEL_HEADER = 8; // The magic number, then the amount of samples
+
+  private final ByteBuffer images; // The image file, positioned after its header
+  private final ByteBuffer labels; // The label file, positioned after its header
+  private final int count; // The amount of samples
+  private final int rows; // The height of each image
+  private final int cols; // The width of each image
+  private final int threshold;
+
+  /**
+   * Creates an IdxDataset over already mapped image and label data.
+   * @param images the image data, with its header
+   * @param labels the label data, with its header
+   * @param threshold the grayscale value (0 to 255) at which a pixel counts as drawn
+   * @throws IOException if either buffer is not in the IDX format, is shorter than its header says, or they do not
+   * match, or a label is not a digit from 0 to 9
+   */
+  public IdxDataset(ByteBuffer images, ByteBuffer labels, int threshold) throws IOException {
+    if (images.limit() < IMAGE_HEADER || images.getInt(0) != IMAGE_MAGIC) {
+      throw new IOException("Not an IDX image file");
+    }
+    if (labels.limit() < LABEL_HEADER || labels.getInt(0) != LABEL_MAGIC) {
+      throw new IOException("Not an IDX label file");
+    }
+
+    this.count = images.getInt(4);
+    this.rows = images.getInt(8);
+    this.cols = images.getInt(12);
+    if (this.count < 0 || this.rows < 0 || this.cols < 0) {
+      throw new IOException("Not an IDX image file");
+    }
+    if (labels.getInt(4) != this.count) {
+      throw new IOException("Image and label files hold a different amount of samples");
+    }
+    if (this.rows != this.cols) {
+      throw new IOException("Images must be square");
+    }
+
+    // The header counts are only trusted once the data they describe is known to be there
+    if (images.limit() < IMAGE_HEADER + (long) this.count * this.rows * this.cols) {
+      throw new IOException("The image file is shorter than its header says");
+    }
+    if (labels.limit() < LABEL_HEADER + (long) this.count) {
+      throw new IOException("The label file is shorter than its header says");
+    }
+
+    // Every reader indexes per-digit arrays by the label, so each one must be a digit
+    for (int idx = 0; idx < this.count; idx += 1) {
+      int label = labels.get(LABEL_HEADER + idx) & 0xFF;
+      if (label >= DigitClassifier.DIGIT_COUNT) {
+        throw new IOException("Sample " + idx + " is labelled " + label + ", which is not a digit");
+      }
+    }
+
+    // Slicing past the headers lets every sample be found with a single multiplication. The slices are taken from
+    // duplicates so the position of the buffers passed in is left alone
+    this.images = images.duplicate().position(IMAGE_HEADER).slice();
+    this.labels = labels.duplicate().position(LABEL_HEADER).slice();
+    this.threshold = threshold;
+  }
+
+  /**
+   * Memory maps the given pair of IDX files.
+   * @param imageFile the path to the image file
+   * @param labelFile the path to the label file
+   * @return the IdxDataset backed by those files
+   * @throws IOException if either file cannot be read, is not in the IDX format or is shorter than its header says,
+   * the files do not match, or a label is not a digit from 0 to 9
+   */
+  public static IdxDataset open(Path imageFile, Path labelFile) throws IOException {
+    return new IdxDataset(map(imageFile), map(labelFile), DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Maps an entire file into memory as read only. The mapping stays valid after the channel is closed.
+   * @param file the file to map
+   * @return the mapped buffer
+   * @throws IOException if the file cannot be read
+   */
+  private static MappedByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Returns the amount of samples in this dataset.
+   * @return the amount of samples
+   */
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * Returns the width (and height) of each image.
+   * @return the amount of pixels along each side
+   */
+  public int getImageSize() {
+    return this.cols;
+  }
+
+  /**
+   * Returns the label of the given sample.
+   * @param index the sample to check
+   * @return the digit that sample represents
+   */
+  public int getLabel(int index) {
+    return this.labels.get(index) & 0xFF;
+  }
+
+  /**
+   * Returns the raw grayscale value of a pixel.
+   * @param index the sample to check
+   * @param col the column to check
+   * @param row the row to check
+   * @return the value of that pixel from 0 (background) to 255 (ink)
+   */
+  public int getPixel(int index, int col, int row) {
+    return this.images.get(index * this.rows * this.cols + row * this.cols + col) & 0xFF;
+  }
+
+  /**
+   * Creates a view of the given sample. The view reads the mapped file directly, it does not copy the image.
+   * @param index the sample to view
+   * @return a Sample positioned on that index
+   */
+  public Sample sample(int index) {
+    Sample sample = new Sample();
+    sample.moveTo(index);
+    return sample;
+  }
+
+  /**
+   * A view of one sample in the dataset. The same view can be moved across the dataset, so streaming every
+   * sample only ever needs one of these.
+   */
+  public class Sample implements PixelSource {
+
+    private int index; // The sample currently viewed
+    private int offset; // Where that sample's image begins
+
+    /**
+     * Moves this view to a different sample.
+     * @param index the sample to view
+     */
+    public void moveTo(int index) {
+      if (index < 0 || index >= IdxDataset.this.count) {
+        throw new IllegalArgumentException("There is no sample " + index);
+      }
+      this.index = index;
+      this.offset = index * IdxDataset.this.rows * IdxDataset.this.cols;
+    }
+
+    /**
+     * Returns the label of the sample currently viewed.
+     * @return the digit this sample represents
+     */
+    public int getLabel() {
+      return IdxDataset.this.getLabel(this.index);
+    }
+
+    /**
+     * Returns the width (and height) of each image.
+     * @return the number of pixels along each side
+     */
+    public int size() {
+      return IdxDataset.this.cols;
+    }
+
+    /**
+     * Returns whether the pixel at the given indices is drawn, meaning its gray level reaches the threshold.
+     * @param col the column to check
+     * @param row the row to check
+     * @return whether that pixel is active
+     * @throws IndexOutOfBoundsException if the pixel is outside the image
+     */
+    public boolean getVal(int col, int row) {
+      if (col < 0 || row < 0 || col >= IdxDataset.this.cols || row >= IdxDataset.this.rows) {
+        throw new IndexOutOfBoundsException("Pixel (" + col + ", " + row + ") is outside the image");
+      }
+      int pixel = IdxDataset.this.images.get(this.offset + row * IdxDataset.this.cols + col) & 0xFF;
+      return pixel >= IdxDataset.this.threshold;
+    }
+
+  }
+
+  /**
+   * Classifies every sample in a pair of IDX files across all cores and prints the accuracy and throughput.
+   * @param args the image file followed by the label file
+   * @throws IOException if either file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("Usage: IdxDataset <images-idx3-ubyte> <labels-idx1-ubyte>");
+      return;
+    }
+
+    IdxDataset dataset = IdxDataset.open(Paths.get(args[0]), Paths.get(args[1]));
+    BatchClassifier batch = new BatchClassifier(new DigitClassifier());
+
+    long start = System.nanoTime();
+    int[] predictions = batch.classifyBatch(dataset, 0, dataset.size());
+    long elapsed = System.nanoTime() - start;
+
+    int correct = 0;
+    int failed = 0; // Samples the pipeline could not process (empty or too small to divide into a grid)
+    for (int index = 0; index < dataset.size(); index += 1) {
+      if (predictions[index] == BatchClassifier.NO_PREDICTION) {
+        failed += 1;
+      }
+      else if (predictions[index] == dataset.getLabel(index)) {
+        correct += 1;
+      }
+    }
+
+    System.out.println("Samples: " + dataset.size());
+    System.out.println("Correct: " + correct + " (" + (100.0 * correct / dataset.size()) + "%)");
+    System.out.println("Failed: " + failed);
+    System.out.println("Samples per second: " + (dataset.size() * 1e9 / elapsed));
+  }
+
+}
@@ -2,409 +2,253 @@ package main;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
 
 /**
  * The LayerOne represents the first layer of visual processing that the human brain does.
  * Layer zero is processing the actual visual into some sort of simplified input stream,
- * which in this case is done by creating a VisionBoard that converts the image to a 5x5 grid.
+ * which in this case is done by creating a VisionBoard that converts the image to a grid, 5x5 unless told otherwise.
  * The LayerOne then calculates some estimated weight for each possible figure that a digit may have.
  * Layer Two/Three is assessing the weights of each figure and combining them to distinguish digits
- * which is done here in the VisionPanel
+ * which is done by the DigitClassifier
+ *
+ * The figures are written for a 5x5 grid and only ever read a 5x5 view of it. A grid of any other size is averaged
+ * back onto fifths before they are checked, so a finer grid does not show the figures any more detail: it is drawn
+ * at its own resolution, but it only changes the figure weights by how its cells are split between fifths.
  */
 public class LayerOne {
 
-  // The 5x5 grid in use. This could have just been a fixed size array, but I wanted
-  // to make this scalable in case I wanted to change the dimensions.
-  private ArrayList<ArrayList<Double>> grid;
+  public static final int DEFAULT_SIZE = FigureRule.GRID_SIZE; // The width (and height) of the grid by default
+  private static final int ALL_FIFTHS = (1 << (FigureRule.GRID_SIZE * FigureRule.GRID_SIZE)) - 1;
+  private static final int DRAWN_WIDTH = 50; // The width (and height) of the whole grid when drawn, in screen pixels
+
+  private final int size; // The width (and height) of the grid
+
+  // The grid in use, flattened so that cell (col, row) is at index col * size + row.
+  // A flat primitive array means reading a cell is a single load, and one LayerOne can be refilled for every drawing.
+  private final double[] grid;
+
+  // For grids of any other size than the figures were written for, how much of each fifth of the grid (along one
+  // axis) each column or row covers: fifth f and cell i at index f * size + i. The 5x5 view the figures read is
+  // built in figureGrid. Both are null when the grid is already 5x5
+  private final double[] coverage;
+  private final double[] figureGrid;
 
   /**
-   * Constructs a LayerOne with the given grid.
-   * @param grid the grid to be used
+   * Constructs a LayerOne with an empty 5x5 grid, ready to be filled by a VisionBoard.
    */
-  public LayerOne(ArrayList<ArrayList<Double>> grid) {
-    this.grid = grid;
+  public LayerOne() {
+    this(DEFAULT_SIZE);
   }
 
   /**
-   * Draws the grid stored in this LayerOne.
-   * @param g the Graphics object used to draw
+   * Constructs a LayerOne with an empty grid of the given size, ready to be filled by a VisionBoard.
+   * Finer grids cost more to fill, and are averaged back onto fifths before the figures read them.
+   * @param size the width (and height) of the grid
+   * @throws IllegalArgumentException if the size is not positive
    */
-  public void drawComponent(Graphics g) {
-    
-    // In effect, we draw a simplified version of the relevant data from the user's drawing.
-    int squareSize = PaintWindow.WIDTH / PaintPanel.SCALE;
-    for (int col = 0; col < this.grid.size(); col += 1) {
-      for (int row = 0; row < this.grid.size(); row += 1) {
-        int current = (int) (this.grid.get(col).get(row) * 255);
-        g.setColor(new Color(0, 0, 0, current));
-        g.fillRect(col * squareSize, row * squareSize, squareSize, squareSize);
-      }
-    }
+  public LayerOne(int size) {
+    this(size, new double[size < 1 ? 0 : size * size]);
   }
 
-  /*
-   * Below are all methods used to assess the likelihood that a given figure may be in the digit.
-   * Weight values are arbitrary and were adjusted as I saw fit in order to make the program work.
-   * This could have been done using some sort of ML algorithm like linear perceptron, but I wanted to
-   * experiment myself and see how close I could get it without offloading the work.
-   * 
-   * Each method is given an arbitrary letter to symbolize the figure associated with it. These were chosen
-   * simply to facilitate adjustments and Layer 2-3 processing when writing code. Each method has above it in
-   * a comment a note of what it actually represents.
-   * 
-   * See the attached image in the README for a breakdown of each figure and which numbers they are commonly found in
-   * 
-   * They commonly work as follows:
-   * 1. If the cells that are most frequently a part of that figure are completely deactivated, then that
-   *    figure must not be present, return 0.
-   * 2. Then, if the cells on the edge of that figure are completely empty, then that figure is likely somewhat present,
-   *    but we lower the scaling of the weights so the confidence is lower.
-   * 3. Otherwise, the figure is likely quite prominent, so we return a fairly highly weighted value for it.
+  /**
+   * Constructs a LayerOne with the given 5x5 grid.
+   * @param grid the grid to be used, cell (col, row) at index col * 5 + row
+   * @throws IllegalArgumentException if the grid does not have 25 cells
    */
-  
-  // BOTTOM HORIZONTAL
-  public double hasFigureA() {
-
-    if (this.grid.get(1).get(4) == 0 || this.grid.get(3).get(4) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(0).get(4) == 0 || this.grid.get(4).get(4) == 0) {
-      return this.grid.get(1).get(4) * 0.5 + this.grid.get(2).get(4) * 0.8
-          + this.grid.get(3).get(4) * 0.5;
-    }
-
-    if (this.grid.get(0).get(4) < 0.4 || this.grid.get(4).get(4) < 0.4) {
-      return this.grid.get(1).get(4) + this.grid.get(2).get(4) * 1.1 + this.grid.get(3).get(4)
-          + (this.grid.get(0).get(4) + this.grid.get(4).get(4)) / 5.0;
-    }
-
-    return this.grid.get(1).get(4) * 1.1 + this.grid.get(2).get(4) * 1.3
-        + this.grid.get(3).get(4) * 1.1 + (this.grid.get(0).get(4) + this.grid.get(4).get(4)) / 5.0;
-  }
-
-  // TOP HORIZONTAL
-  public double hasFigureB() {
-
-    if (this.grid.get(1).get(0) == 0 || this.grid.get(2).get(0) == 0 || this.grid.get(3).get(0) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(0).get(0) == 0 || this.grid.get(4).get(0) == 0) {
-      return this.grid.get(1).get(0) * 0.5 + this.grid.get(2).get(0) * 0.8
-          + this.grid.get(3).get(0) * 0.5;
-    }
-
-    if (this.grid.get(0).get(0) < 0.4 || this.grid.get(4).get(0) < 0.4) {
-      return this.grid.get(1).get(0) + this.grid.get(2).get(0) * 1.1 + this.grid.get(3).get(0)
-          + (this.grid.get(0).get(0) + this.grid.get(4).get(0)) / 5.0;
-    }
-
-    return this.grid.get(1).get(0) * 1.1 + this.grid.get(2).get(0) * 1.3
-        + this.grid.get(3).get(0) * 1.1 + (this.grid.get(0).get(0) + this.grid.get(4).get(0)) / 5.0;
-  }
-
-  // RIGHT VERTICAL
-  public double hasFigureC() {
-
-    if (this.grid.get(3).get(1) == 0 || this.grid.get(3).get(3) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(3).get(0) == 0 || this.grid.get(3).get(4) == 0) {
-      return this.grid.get(3).get(1) * 0.5 + this.grid.get(3).get(2) * 0.8
-          + this.grid.get(3).get(3) * 0.5;
-    }
-
-    if (this.grid.get(3).get(0) < 0.4 || this.grid.get(3).get(4) < 0.4) {
-      return this.grid.get(3).get(1) + this.grid.get(3).get(2) * 1.1 + this.grid.get(3).get(3)
-          + (this.grid.get(3).get(0) + this.grid.get(3).get(4)) / 5.0;
-    }
-
-    return this.grid.get(3).get(1) * 1.1 + this.grid.get(3).get(2) * 1.3
-        + this.grid.get(3).get(3) * 1.1 + (this.grid.get(3).get(0) + this.grid.get(4).get(4)) / 5.0;
-  }
-
-  // CENTER VERTICAL
-  public double hasFigureD() {
-
-    if (this.grid.get(2).get(1) == 0 || this.grid.get(2).get(3) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(2).get(0) == 0 || this.grid.get(2).get(4) == 0) {
-      return this.grid.get(2).get(1) * 0.5 + this.grid.get(2).get(2) * 0.8
-          + this.grid.get(2).get(3) * 0.5;
-    }
-
-    if (this.grid.get(2).get(0) < 0.4 || this.grid.get(2).get(4) < 0.4) {
-      return this.grid.get(2).get(1) + this.grid.get(2).get(2) * 1.1 + this.grid.get(2).get(3)
-          + (this.grid.get(2).get(0) + this.grid.get(2).get(4)) / 5.0;
-    }
-
-    return this.grid.get(2).get(1) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(2).get(3) * 1.1 + (this.grid.get(2).get(0) + this.grid.get(2).get(4)) / 5.0;
-  }
-
-  // DIAGONAL (2,4) to (3, 0) or (1,4) to (3,0)
-  public double hasFigureE() {
-
-    if ((this.grid.get(2).get(3) <= 0.2 && this.grid.get(3).get(1) <= 0.2)
-        || (this.grid.get(1).get(3) <= 0.2 && this.grid.get(3).get(1) <= 0.2)) {
-      return 0.0;
-    }
-
-    if (this.grid.get(2).get(4) == 0 || this.grid.get(3).get(0) == 0) {
-      return Math.max(this.grid.get(2).get(3) * 0.5 + this.grid.get(2).get(2) * 0.8
-          + this.grid.get(3).get(1) * 0.5, this.grid.get(1).get(3) * 0.5 + this.grid.get(2).get(2) * 0.8
-          + this.grid.get(3).get(1) * 0.5);
-    }
-
-    if (this.grid.get(0).get(4) < 0.4 || this.grid.get(4).get(0) < 0.4) {
-      return Math.max(this.grid.get(2).get(3) + this.grid.get(2).get(2) * 1.1 + this.grid.get(3).get(1)
-          + (this.grid.get(2).get(4) + this.grid.get(3).get(0)) / 5.0,
-          this.grid.get(1).get(3) + this.grid.get(2).get(2) * 1.1 + this.grid.get(3).get(1)
-          + (this.grid.get(1).get(4) + this.grid.get(3).get(0)) / 5.0);
-    }
-
-    return Math.max(this.grid.get(2).get(3) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(3).get(1) * 1.1 + (this.grid.get(2).get(4) + this.grid.get(3).get(0)) / 5.0,
-        this.grid.get(1).get(3) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(3).get(1) * 1.1 + (this.grid.get(1).get(4) + this.grid.get(3).get(0)) / 5.0);
+  public LayerOne(double[] grid) {
+    this(DEFAULT_SIZE, grid);
   }
 
-  // CENTER HORIZONTAL
-  public double hasFigureF() {
-    
-    if (this.grid.get(1).get(2) == 0 || this.grid.get(3).get(2) == 0) {
-      return 0.0;
+  /**
+   * Constructs a LayerOne with the given grid.
+   * @param size the width (and height) of the grid
+   * @param grid the grid to be used, cell (col, row) at index col * size + row
+   * @throws IllegalArgumentException if the size is not positive or the grid does not have size * size cells
+   */
+  public LayerOne(int size, double[] grid) {
+    if (size < 1) {
+      throw new IllegalArgumentException("A LayerOne grid must have at least one cell");
     }
-
-    if (this.grid.get(0).get(2) == 0 || this.grid.get(4).get(2) == 0) {
-      return this.grid.get(1).get(2) * 0.75 + this.grid.get(2).get(2) * 1
-          + this.grid.get(3).get(2) * 0.75;
+    if (grid.length != size * size) {
+      throw new IllegalArgumentException("A LayerOne grid must have " + (size * size) + " cells");
     }
+    this.size = size;
+    this.grid = grid;
 
-    if (this.grid.get(0).get(2) < 0.4 || this.grid.get(4).get(2) < 0.4) {
-      return this.grid.get(1).get(2) + this.grid.get(2).get(2) * 1.1 + this.grid.get(3).get(2)
-          + (this.grid.get(0).get(2) + this.grid.get(4).get(2)) / 5.0;
+    if (size == FigureRule.GRID_SIZE) {
+      this.coverage = null;
+      this.figureGrid = null;
+      return;
     }
 
-    return this.grid.get(1).get(2) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(3).get(2) * 1.1 + (this.grid.get(0).get(2) + this.grid.get(4).get(2)) / 5.0;
-  }
-
-  // LEFT FORK
-  public double hasFigureG() {
-
-    if (this.grid.get(1).get(0) == 0 || this.grid.get(1).get(1) == 0) {
-      return 0.0;
+    // Working in units of 1 / (5 * size) of the grid keeps every boundary on a whole number
+    this.coverage = new double[FigureRule.GRID_SIZE * size];
+    for (int fifth = 0; fifth < FigureRule.GRID_SIZE; fifth += 1) {
+      for (int cell = 0; cell < size; cell += 1) {
+        int overlap = Math.min((fifth + 1) * size, (cell + 1) * FigureRule.GRID_SIZE)
+            - Math.max(fifth * size, cell * FigureRule.GRID_SIZE);
+        this.coverage[fifth * size + cell] = Math.max(overlap, 0) / (double) size;
+      }
     }
-
-    return this.grid.get(1).get(0) * 0.5 + this.grid.get(1).get(1) * 0.8
-        + this.grid.get(1).get(2) * 0.5;
-
+    this.figureGrid = new double[FigureRule.GRID_SIZE * FigureRule.GRID_SIZE];
   }
 
-  // LEFT LEG
-  public double hasFigureH() {
-
-    if (this.grid.get(1).get(3) == 0 || this.grid.get(1).get(4) == 0) {
-      return 0.0;
-    }
-
-    return Math.max(this.grid.get(1).get(2) * 0.5 + this.grid.get(1).get(3) * 0.8
-        + this.grid.get(1).get(4) * 0.5, this.grid.get(0).get(2) * 0.5 + this.grid.get(0).get(3) * 0.8
-        + this.grid.get(0).get(4) * 0.5);
-
+  /**
+   * Returns the width (and height) of the grid.
+   * @return the number of cells along each side
+   */
+  public int getSize() {
+    return this.size;
   }
 
-  // TOPLEFT ROOF
-  public double hasFigureI() {
-
-    if (this.grid.get(0).get(0) == 0 || this.grid.get(1).get(0) == 0
-        || this.grid.get(2).get(0) == 0) {
-      return 0.0;
-    }
-
-    return this.grid.get(0).get(0) * 0.5 + this.grid.get(1).get(0) * 0.8
-        + this.grid.get(2).get(0) * 0.5;
-
+  /**
+   * Returns the flat grid backing this LayerOne, so that it can be filled without copying.
+   * @return the grid, cell (col, row) at index col * getSize() + row
+   */
+  public double[] getGrid() {
+    return this.grid;
   }
 
-  // LEFT CURVE
-  public double hasFigureJ() {
-
-    if (this.grid.get(1).get(1) == 0 || this.grid.get(1).get(3) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(2).get(0) == 0 || this.grid.get(2).get(4) == 0) {
-      return this.grid.get(1).get(1) * 0.5 + this.grid.get(1).get(2) * 0.8
-          + this.grid.get(1).get(3) * 0.5;
-    }
-
-    if (this.grid.get(2).get(0) < 0.4 || this.grid.get(2).get(4) < 0.4) {
-      return this.grid.get(1).get(1) + this.grid.get(1).get(2) * 1.1 + this.grid.get(1).get(3)
-          + (this.grid.get(2).get(0) + this.grid.get(2).get(4)) / 5.0;
-    }
-
-    return this.grid.get(1).get(1) * 1.1 + this.grid.get(1).get(2) * 1.3
-        + this.grid.get(1).get(3) * 1.1 + (this.grid.get(2).get(0) + this.grid.get(2).get(4)) / 5.0;
+  /**
+   * Returns the value of the given cell.
+   * @param col the column to check
+   * @param row the row to check
+   * @return the value of that cell
+   */
+  public double getCell(int col, int row) {
+    return this.grid[col * this.size + row];
   }
 
-  // CENTER RIGHT CURVE
-  public double hasFigureK() {
-
-    if (this.grid.get(2).get(1) == 0 || this.grid.get(2).get(3) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(3).get(0) == 0 || this.grid.get(3).get(4) == 0) {
-      return this.grid.get(2).get(1) * 0.5 + this.grid.get(2).get(2) * 0.8
-          + this.grid.get(2).get(3) * 0.5;
-    }
-
-    if (this.grid.get(3).get(0) < 0.4 || this.grid.get(3).get(4) < 0.4) {
-      return this.grid.get(2).get(1) + this.grid.get(2).get(2) * 1.1 + this.grid.get(2).get(3)
-          + (this.grid.get(3).get(0) + this.grid.get(3).get(4)) / 5.0;
-    }
-
-    return this.grid.get(2).get(1) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(2).get(3) * 1.1 + (this.grid.get(3).get(0) + this.grid.get(2).get(4)) / 5.0;
-  }
-  
-  // TOPCENTER ROOF
-  public double hasFigureL() {
+  /**
+   * Draws the grid stored in this LayerOne.
+   * @param g the Graphics object used to draw
+   */
+  public void drawComponent(Graphics g) {
     
-    if (this.grid.get(2).get(0) <= .2) {
-      return 0.0;
-    }
-
-    if (this.grid.get(1).get(0) == 0 || this.grid.get(2).get(0) == 0
-        || this.grid.get(3).get(0) == 0) {
-      return 0.0;
+    // In effect, we draw a simplified version of the relevant data from the user's drawing.
+    // Finer grids get smaller squares, so every grid covers the same area whatever size the drawing was
+    int squareSize = DRAWN_WIDTH / this.size;
+    for (int col = 0; col < this.size; col += 1) {
+      for (int row = 0; row < this.size; row += 1) {
+        int current = (int) (this.getCell(col, row) * 255);
+        g.setColor(new Color(0, 0, 0, current));
+        g.fillRect(col * squareSize, row * squareSize, squareSize, squareSize);
+      }
     }
-
-    return this.grid.get(1).get(0) * 0.3 + this.grid.get(2).get(0) * 0.5
-        + this.grid.get(3).get(0) * 0.3;
-
   }
-  
-  // RIGHT LEG
-  public double hasFigureM() {
-    
-    if (this.grid.get(3).get(3) == 0 || this.grid.get(3).get(4) == 0) {
-      return 0.0;
-    }
 
-    return Math.max(this.grid.get(3).get(2) * 0.5 + this.grid.get(3).get(3) * 0.8
-        + this.grid.get(3).get(4) * 0.5, this.grid.get(4).get(2) * 0.5 + this.grid.get(4).get(3) * 0.8
-        + this.grid.get(4).get(4) * 0.5);
-    
+  /**
+   * Calculates the estimated weight of a single figure.
+   * @param index the figure to assess, 0 for A through 18 for S
+   * @return the estimated weight of that figure
+   */
+  public double hasFigure(int index) {
+    return FigureRule.FIGURES[index].evaluate(this.figureGrid());
   }
-  
-  // DIAGONAL (1,0) to (3, 4)
-  public double hasFigureN() {
-
-    if (this.grid.get(1).get(1) <= 0.2 || this.grid.get(2).get(2) < .4 || this.grid.get(3).get(3) <= 0.2) {
-      return 0.0;
-    }
 
-    if (this.grid.get(1).get(0) == 0 || this.grid.get(3).get(4) == 0) {
-      return this.grid.get(1).get(1) * 0.5 + this.grid.get(2).get(2) * 0.8
-          + this.grid.get(3).get(3) * 0.5;
-    }
-
-    if (this.grid.get(1).get(0) < 0.4 || this.grid.get(3).get(4) < 0.4) {
-      return this.grid.get(1).get(1) + this.grid.get(2).get(2) * 1.1 + this.grid.get(3).get(3)
-          + (this.grid.get(1).get(0) + this.grid.get(3).get(4)) / 5.0;
-    }
-
-    return this.grid.get(1).get(1) * 1.1 + this.grid.get(2).get(2) * 1.3
-        + this.grid.get(3).get(3) * 1.1 + (this.grid.get(1).get(0) + this.grid.get(3).get(4)) / 5.0;
-  }
-  
-  // MID-HIGH CENTER ROOF
-  public double hasFigureO() {
-    
-    if (this.grid.get(2).get(1) <= .2) {
-      return 0.0;
+  /**
+   * Calculates the estimated weight of every figure, running each rule of the FigureRule table over the grid.
+   * @param figures the array to fill, index 0 for figure A through 18 for figure S
+   */
+  public void scoreFigures(double[] figures) {
+    StageEvents.Figures event = new StageEvents.Figures();
+    event.begin();
+    double[] view = this.figureGrid();
+    for (int index = 0; index < FigureRule.FIGURES.length; index += 1) {
+      figures[index] = FigureRule.FIGURES[index].evaluate(view);
     }
-
-    if (this.grid.get(1).get(1) == 0 || this.grid.get(2).get(1) == 0
-        || this.grid.get(3).get(1) == 0) {
-      return 0.0;
+    if (event.shouldCommit()) {
+      event.gridSize = this.size;
+      event.commit();
     }
-
-    return this.grid.get(1).get(1) * 0.3 + this.grid.get(2).get(1) * 0.5
-        + this.grid.get(3).get(1) * 0.3;
   }
-  
-  // RIGHT FORK
-  public double hasFigureP() {
 
-    if (this.grid.get(3).get(0) == 0 || this.grid.get(3).get(1) == 0) {
-      return 0.0;
+  /**
+   * Re-scores only the figures that read a part of the grid that changed, leaving the other weights as they were.
+   * This gives the same weights as scoreFigures, provided the figures of this LayerOne were last scored into the same
+   * array, before the change.
+   * @param figures the weights to update, index 0 for figure A through 18 for figure S
+   * @param changed which cells of the grid changed, cell (col, row) at index col * getSize() + row
+   */
+  public void rescoreFigures(double[] figures, boolean[] changed) {
+    int fifths = FigureRule.GRID_SIZE;
+    int touched = 0; // The fifths the changed cells fall in, bit (col * 5 + row) for each
+    for (int col = 0; col < this.size; col += 1) {
+      for (int row = 0; row < this.size; row += 1) {
+        if (!changed[col * this.size + row]) {
+          continue;
+        }
+        if (this.figureGrid == null) {
+          touched |= 1 << (col * fifths + row);
+          continue;
+        }
+        for (int figCol = 0; figCol < fifths; figCol += 1) {
+          for (int figRow = 0; figRow < fifths; figRow += 1) {
+            if (this.coverage[figCol * this.size + col] != 0.0 && this.coverage[figRow * this.size + row] != 0.0) {
+              touched |= 1 << (figCol * fifths + figRow);
+            }
+          }
+        }
+      }
     }
-
-    return this.grid.get(3).get(0) * 0.5 + this.grid.get(3).get(1) * 0.8
-        + this.grid.get(3).get(2) * 0.5;
-
-  }
-  
-  // TOPLEFT CURVE (on a 2)
-  public double hasFigureQ() {
-
-    return this.grid.get(0).get(1) * 0.5 + this.grid.get(0).get(0) * 0.8
-        + this.grid.get(1).get(0) * 0.5;
-
-  }
-  
-  // FAR LEFT VERTICAL (only used in detecting zeroes)
-  public double hasFigureR() {
-
-    if (this.grid.get(0).get(1) == 0 || this.grid.get(0).get(3) == 0) {
-      return 0.0;
+    if (touched == 0) {
+      return;
     }
 
-    if (this.grid.get(0).get(0) == 0 || this.grid.get(0).get(4) == 0) {
-      return this.grid.get(0).get(1) * 0.5 + this.grid.get(0).get(2) * 0.8
-          + this.grid.get(0).get(3) * 0.5;
+    StageEvents.Figures event = new StageEvents.Figures();
+    event.begin();
+    double[] view = this.figureGrid(touched);
+    for (int index = 0; index < FigureRule.FIGURES.length; index += 1) {
+      if ((FigureRule.FIGURES[index].getCells() & touched) != 0) {
+        figures[index] = FigureRule.FIGURES[index].evaluate(view);
+      }
     }
-
-    if (this.grid.get(0).get(0) < 0.4 || this.grid.get(0).get(4) < 0.4) {
-      return this.grid.get(0).get(1) + this.grid.get(0).get(2) * 1.1 + this.grid.get(0).get(3)
-          + (this.grid.get(0).get(0) + this.grid.get(0).get(4)) / 5.0;
+    if (event.shouldCommit()) {
+      event.gridSize = this.size;
+      event.commit();
     }
-
-    return this.grid.get(0).get(1) * 1.1 + this.grid.get(0).get(2) * 1.3
-        + this.grid.get(0).get(3) * 1.1 + (this.grid.get(0).get(0) + this.grid.get(0).get(4)) / 5.0;
   }
-  
-  // FAR RIGHT VERTICAL (only used in detecting zeroes)
-  public double hasFigureS() {
 
-    if (this.grid.get(4).get(1) == 0 || this.grid.get(4).get(3) == 0) {
-      return 0.0;
-    }
-
-    if (this.grid.get(4).get(0) == 0 || this.grid.get(4).get(4) == 0) {
-      return this.grid.get(4).get(1) * 0.5 + this.grid.get(4).get(2) * 0.8
-          + this.grid.get(4).get(3) * 0.5;
-    }
+  /**
+   * Returns the grid the way the figures see it, bringing every fifth up to date.
+   * @return the 5x5 view of the grid, cell (col, row) at index col * 5 + row
+   */
+  private double[] figureGrid() {
+    return this.figureGrid(ALL_FIFTHS);
+  }
 
-    if (this.grid.get(4).get(0) < 0.4 || this.grid.get(4).get(4) < 0.4) {
-      return this.grid.get(4).get(1) + this.grid.get(4).get(2) * 1.1 + this.grid.get(0).get(3)
-          + (this.grid.get(4).get(0) + this.grid.get(4).get(4)) / 5.0;
+  /**
+   * Returns the grid the way the figures see it. The figures are laid out on fifths of the drawing, so a grid of
+   * any other size is averaged onto fifths first: each fifth takes the cells it overlaps, weighted by how much of
+   * the fifth they cover. A 5x5 grid is used as it is.
+   * @param update the fifths to bring up to date, bit (col * 5 + row) for each. The others keep their last values
+   * @return the 5x5 view of the grid, cell (col, row) at index col * 5 + row
+   */
+  private double[] figureGrid(int update) {
+    if (this.figureGrid == null) {
+      return this.grid;
+    }
+
+    int fifths = FigureRule.GRID_SIZE;
+    for (int figCol = 0; figCol < fifths; figCol += 1) {
+      for (int figRow = 0; figRow < fifths; figRow += 1) {
+        if ((update & (1 << (figCol * fifths + figRow))) == 0) {
+          continue;
+        }
+        double total = 0.0;
+        for (int col = 0; col < this.size; col += 1) {
+          double across = this.coverage[figCol * this.size + col];
+          if (across == 0.0) {
+            continue;
+          }
+          for (int row = 0; row < this.size; row += 1) {
+            total += across * this.coverage[figRow * this.size + row] * this.grid[col * this.size + row];
+          }
+        }
+        this.figureGrid[figCol * fifths + figRow] = total;
+      }
     }
-
-    return this.grid.get(4).get(1) * 1.1 + this.grid.get(4).get(2) * 1.3
-        + this.grid.get(4).get(3) * 1.1 + (this.grid.get(4).get(0) + this.grid.get(0).get(4)) / 5.0;
+    return this.figureGrid;
   }
-  
-  
-  
 
 }
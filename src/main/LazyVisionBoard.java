@@ -0,0 +1,49 @@
+package main;
+
+/**
+ * An OptionalVisionBoard that follows a DrawingBoard without rebuilding its VisionBoard on every change.
+ * The VisionBoard is only built when it is extracted, and is kept until the DrawingBoard is changed again,
+ * so a fast stroke of many mouse events builds nothing unless something actually reads the result.
+ * Like the DrawingBoard it follows, it must only be used from one thread.
+ */
+public class LazyVisionBoard implements OptionalVisionBoard {
+
+  private final DrawingBoard board; // The board being followed
+  private VisionBoard vBoard; // The last VisionBoard built, or null if none has been
+  private long builtAt; // The modification count of the board when vBoard was built
+
+  /**
+   * Creates a LazyVisionBoard that follows the given board.
+   * @param board the board to follow
+   */
+  public LazyVisionBoard(DrawingBoard board) {
+    this.board = board;
+  }
+
+  /**
+   * A LazyVisionBoard can be extracted whenever there is something drawn on its board.
+   * @return whether the board has any active cells
+   */
+  public boolean isVisionBoard() {
+    return !this.board.isEmpty();
+  }
+
+  /**
+   * Returns a VisionBoard of the board as it is now, building a new one only if the board changed since the last.
+   * A VisionBoard that has been returned is never loaded again, since a change to the board builds a new one, so it
+   * may be handed to another thread as long as the caller does not use it afterwards.
+   * @return the VisionBoard of the current drawing
+   * @throws IllegalStateException if the board is empty
+   */
+  public VisionBoard extract() {
+    if (this.board.isEmpty()) {
+      throw new IllegalStateException("Cannot extract non-existent board");
+    }
+    if (this.vBoard == null || this.builtAt != this.board.getModCount()) {
+      this.vBoard = this.board.makeVisionBoard();
+      this.builtAt = this.board.getModCount();
+    }
+    return this.vBoard;
+  }
+
+}
@@ -0,0 +1,251 @@
+package main;
+
+/**
+ * Keeps the grid and figure weights of a DrawingBoard up to date as it is drawn on, so a prediction can be shown
+ * while the user is still drawing. While the crop of the drawing stays where it is, a change to a few cells only
+ * changes the grid cells whose sections hold those cells or their neighbors, and only the figures that read those
+ * grid cells are scored again. Whenever the crop moves every section moves with it, so the grid is built again from
+ * scratch, exactly as the VisionBoard would for a new drawing.
+ *
+ * Changes are collected with markChanged as they happen and applied together by update, so any number of brush
+ * strokes between two updates cost one pass over the area they covered. Like the DrawingBoard it follows, a
+ * LiveGrid must only be used from one thread.
+ */
+public class LiveGrid {
+
+  private final DrawingBoard board; // The board being followed
+  private final VisionBoard vBoard = new VisionBoard(); // The relevant part of the board, as of the last update
+  private final LayerOne l1;
+  private final double[] figures = new double[DigitClassifier.FIGURE_COUNT]; // The figure weights of l1
+  private final int[] totals; // The weight of each grid cell's section in twentieths, the same order as the grid
+  private final boolean[] changed; // Scratch for which grid cells an update changed
+  private int[] region = new int[0]; // Scratch for the weight of every cell in the region an update covers
+  private int[] sections; // The section of each grid cell, as laid out by the VisionBoard for the current crop
+  private boolean built; // Whether the grid matches the board as of builtAt
+  private long builtAt; // The modification count of the board when the grid was last brought up to date
+
+  // The cells of the board that changed since the last update, or an empty region (left > right) if none did
+  private int dirtyLeft;
+  private int dirtyTop;
+  private int dirtyRight;
+  private int dirtyBottom;
+
+  // How often each kind of update was done, for measuring how often the crop moves during a stroke
+  private long rebuilds;
+  private long patches;
+
+  /**
+   * Creates a LiveGrid that follows the given board. Nothing is computed until the first update.
+   * @param board the board to follow
+   * @param gridSize the width (and height) of the grid, for example the grid size of the recognizer in use
+   * @throws IllegalArgumentException if the grid size is not positive
+   */
+  public LiveGrid(DrawingBoard board, int gridSize) {
+    this.board = board;
+    this.l1 = new LayerOne(gridSize);
+    this.totals = new int[gridSize * gridSize];
+    this.changed = new boolean[gridSize * gridSize];
+    this.clearDirty();
+  }
+
+  /**
+   * Records that some cells of the board may have changed, for example the cells a brush stroke could reach.
+   * Every change to the board between two updates must be marked. If none is marked at all, the next update
+   * builds the grid from scratch.
+   * @param left the leftmost column that may have changed
+   * @param top the uppermost row that may have changed
+   * @param right the rightmost column that may have changed
+   * @param bottom the lowermost row that may have changed
+   */
+  public void markChanged(int left, int top, int right, int bottom) {
+    this.dirtyLeft = Math.min(this.dirtyLeft, left);
+    this.dirtyTop = Math.min(this.dirtyTop, top);
+    this.dirtyRight = Math.max(this.dirtyRight, right);
+    this.dirtyBottom = Math.max(this.dirtyBottom, bottom);
+  }
+
+  /**
+   * Brings the grid and figure weights up to date with the board.
+   * @return whether there is a grid to read, false when the board is empty or the drawing is too small to divide
+   * into a grid
+   */
+  public boolean update() {
+    long modCount = this.board.getModCount();
+    if (this.built && modCount == this.builtAt) {
+      this.clearDirty();
+      return true;
+    }
+    if (this.board.isEmpty()) {
+      this.built = false;
+      this.clearDirty();
+      return false;
+    }
+
+    CropRect crop = this.board.getCrop();
+    try {
+      if (this.built && this.dirtyLeft <= this.dirtyRight && sameCrop(crop, this.vBoard.getCrop())) {
+        this.patch(crop);
+        this.patches += 1;
+      }
+      else {
+        this.rebuild();
+        this.rebuilds += 1;
+      }
+      this.built = true;
+      this.builtAt = modCount;
+    }
+    catch (IllegalArgumentException e) {
+      this.built = false; // Too small to divide into a grid, so there is nothing to show until the drawing grows
+    }
+    this.clearDirty();
+    return this.built;
+  }
+
+  /**
+   * Returns the grid as of the last update.
+   * @return the LayerOne, which is refilled by later updates
+   */
+  public LayerOne getGrid() {
+    return this.l1;
+  }
+
+  /**
+   * Returns the figure weights of the grid as of the last update.
+   * @return the weights of figures A through S, which are overwritten by later updates and must not be changed
+   */
+  public double[] getFigures() {
+    return this.figures;
+  }
+
+  /**
+   * Returns how many updates had to build the grid from scratch, because the crop moved.
+   * @return the amount of full rebuilds
+   */
+  public long getRebuilds() {
+    return this.rebuilds;
+  }
+
+  /**
+   * Returns how many updates only changed the grid cells around what was drawn.
+   * @return the amount of partial updates
+   */
+  public long getPatches() {
+    return this.patches;
+  }
+
+  /**
+   * Builds the grid, its section weights and every figure weight from scratch.
+   */
+  private void rebuild() {
+    this.vBoard.load(this.board);
+    this.vBoard.generateGrid(this.l1);
+    this.sections = this.vBoard.layoutSections(this.l1.getSize());
+    for (int cell = 0; cell < this.totals.length; cell += 1) {
+      this.totals[cell] = this.vBoard.sectionWeight(this.sections[cell * 3], this.sections[cell * 3 + 1],
+          this.sections[cell * 3 + 2]);
+    }
+    this.l1.scoreFigures(this.figures);
+  }
+
+  /**
+   * Updates only the grid cells whose weight the marked cells can have changed, then the figures that read them.
+   * A cell's weight depends on its neighbors, so that is every section overlapping the marked region grown by one.
+   * @param crop the crop of the board, which must be the same as when the grid was built
+   */
+  private void patch(CropRect crop) {
+    int last = this.vBoard.getBoardSize() - 1;
+    int left = Math.max(this.dirtyLeft - crop.getLeft() - 1, 0);
+    int top = Math.max(this.dirtyTop - crop.getTop() - 1, 0);
+    int right = Math.min(this.dirtyRight - crop.getLeft() + 1, last);
+    int bottom = Math.min(this.dirtyBottom - crop.getTop() + 1, last);
+    if (left > right || top > bottom) {
+      return; // Nothing that changed is inside the relevant part
+    }
+
+    // Take away the old weight of the region from every section it overlaps, copy the new cells in, then add the
+    // new weight back. The rest of each section is untouched, so its share of the total stays the same
+    int cells = this.totals.length;
+    this.weighRegion(left, top, right, bottom);
+    for (int cell = 0; cell < cells; cell += 1) {
+      this.totals[cell] -= this.regionWeight(cell, left, top, right, bottom);
+    }
+    this.vBoard.reloadRows(this.board, top, bottom);
+    this.weighRegion(left, top, right, bottom);
+    double[] grid = this.l1.getGrid();
+    boolean any = false;
+    for (int cell = 0; cell < cells; cell += 1) {
+      this.totals[cell] += this.regionWeight(cell, left, top, right, bottom);
+      double value = VisionBoard.sectionAverage(this.totals[cell], this.sections[cell * 3 + 2]);
+      this.changed[cell] = value != grid[cell];
+      any |= this.changed[cell];
+      grid[cell] = value;
+    }
+    if (any) {
+      this.l1.rescoreFigures(this.figures, this.changed);
+    }
+  }
+
+  /**
+   * Finds the weight of every cell of a region of the relevant part of the board, as it is now.
+   * @param left the leftmost column of the region
+   * @param top the uppermost row of the region
+   * @param right the rightmost column of the region
+   * @param bottom the lowermost row of the region
+   */
+  private void weighRegion(int left, int top, int right, int bottom) {
+    int width = right - left + 1;
+    if (this.region.length < width * (bottom - top + 1)) {
+      this.region = new int[width * (bottom - top + 1)];
+    }
+    for (int row = top; row <= bottom; row += 1) {
+      this.vBoard.cellWeights(row, left, right, this.region, (row - top) * width);
+    }
+  }
+
+  /**
+   * Totals the weight of the part of the region last weighed that falls inside one grid cell's section.
+   * @param cell the grid cell
+   * @param left the leftmost column of the region, in the relevant part of the board
+   * @param top the uppermost row of the region
+   * @param right the rightmost column of the region
+   * @param bottom the lowermost row of the region
+   * @return the weight of the overlap in twentieths, 0 if the region misses the section
+   */
+  private int regionWeight(int cell, int left, int top, int right, int bottom) {
+    int dim = this.sections[cell * 3 + 2];
+    int fromCol = Math.max(left, this.sections[cell * 3]);
+    int toCol = Math.min(right, this.sections[cell * 3] + dim - 1);
+    int fromRow = Math.max(top, this.sections[cell * 3 + 1]);
+    int toRow = Math.min(bottom, this.sections[cell * 3 + 1] + dim - 1);
+    int width = right - left + 1;
+    int total = 0;
+    for (int row = fromRow; row <= toRow; row += 1) {
+      for (int col = fromCol; col <= toCol; col += 1) {
+        total += this.region[(row - top) * width + col - left];
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Forgets the marked region, leaving it empty.
+   */
+  private void clearDirty() {
+    this.dirtyLeft = Integer.MAX_VALUE;
+    this.dirtyTop = Integer.MAX_VALUE;
+    this.dirtyRight = Integer.MIN_VALUE;
+    this.dirtyBottom = Integer.MIN_VALUE;
+  }
+
+  /**
+   * Determines whether two crops cover the same square.
+   * @param first one crop
+   * @param second the other crop
+   * @return whether they are the same
+   */
+  private static boolean sameCrop(CropRect first, CropRect second) {
+    return first.getLeft() == second.getLeft() && first.getTop() == second.getTop()
+        && first.getSize() == second.getSize();
+  }
+
+}
@@ -0,0 +1,216 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects classification requests from many threads into batches, so the fixed cost of handing work over is paid
+ * once per batch instead of once per request. A batch is sent as soon as it is full, or once its first request has
+ * waited maxWait, whichever comes first. A single thread runs every batch through one reused Scratch, then
+ * completes each request's future.
+ *
+ * The queue has a fixed capacity. Requests that arrive while it is full are refused straight away (their future fails
+ * with a RejectedExecutionException) rather than waiting, so callers can shed load.
+ */
+public class MicroBatcher {
+
+  public static final int DEFAULT_BATCH_SIZE = 64;
+  public static final long DEFAULT_MAX_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+  public static final int DEFAULT_CAPACITY = 4096; // Requests that may wait before new ones are refused
+
+  private final DigitRecognizer recognizer;
+  private final int batchSize;
+  private final long maxWaitNanos;
+  private final BlockingQueue<Request> queue;
+  private final Histogram batchSizes = new Histogram();
+  private final Histogram queueDepths = new Histogram(); // Requests left waiting each time a batch is taken
+  private final Thread thread;
+  private volatile boolean closed;
+
+  /**
+   * Creates a MicroBatcher with the default batch size, wait and capacity, and starts its thread.
+   * @param recognizer the recognizer to classify with
+   */
+  public MicroBatcher(DigitRecognizer recognizer) {
+    this(recognizer, DEFAULT_BATCH_SIZE, DEFAULT_MAX_WAIT_NANOS, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a MicroBatcher and starts its thread.
+   * @param recognizer the recognizer to classify with
+   * @param batchSize the most requests classified together
+   * @param maxWaitNanos the longest the first request of a batch waits for others to join it, in nanoseconds
+   * @param capacity the most requests that may wait in the queue
+   * @throws IllegalArgumentException if the batch size or capacity is not positive, or the wait is negative
+   */
+  public MicroBatcher(DigitRecognizer recognizer, int batchSize, long maxWaitNanos, int capacity) {
+    if (batchSize < 1 || capacity < 1) {
+      throw new IllegalArgumentException("The batch size and capacity must be at least 1");
+    }
+    if (maxWaitNanos < 0) {
+      throw new IllegalArgumentException("The wait cannot be negative");
+    }
+    this.recognizer = recognizer;
+    this.batchSize = batchSize;
+    this.maxWaitNanos = maxWaitNanos;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.thread = new Thread(this::dispatch, "micro-batcher");
+    this.thread.setDaemon(true); // The batcher should never keep the application open
+    this.thread.start();
+  }
+
+  /**
+   * Queues an image to be classified with the next batch. The image is read on the batcher's thread, so it must not
+   * change until the future completes.
+   * @param source the image to classify
+   * @return the future result, which fails with IllegalArgumentException if the image cannot be classified, and
+   * with RejectedExecutionException if the queue is full or the batcher is closed
+   */
+  public CompletableFuture<ClassificationResult> submit(PixelSource source) {
+    Request request = new Request(source, System.nanoTime());
+    if (this.closed) {
+      request.future.completeExceptionally(new RejectedExecutionException("The batcher was closed"));
+      return request.future;
+    }
+    if (!this.queue.offer(request)) {
+      request.future.completeExceptionally(new RejectedExecutionException("The classification queue is full"));
+      return request.future;
+    }
+
+    // The batcher may have been closed since the check above, after its thread refused what was left in the queue.
+    // Take the request back out and refuse it. If the thread took it first, it is run or refused there
+    if (this.closed && this.queue.remove(request)) {
+      request.future.completeExceptionally(new RejectedExecutionException("The batcher was closed"));
+    }
+    return request.future;
+  }
+
+  /**
+   * Stops taking requests and refuses any still waiting. A batch already running is allowed to finish.
+   */
+  public void close() {
+    this.closed = true;
+    this.thread.interrupt();
+    Request request;
+    while ((request = this.queue.poll()) != null) {
+      request.future.completeExceptionally(new RejectedExecutionException("The batcher was closed"));
+    }
+  }
+
+  /**
+   * Returns how many requests each batch held.
+   * @return the batch sizes seen so far
+   */
+  public Histogram getBatchSizes() {
+    return this.batchSizes;
+  }
+
+  /**
+   * Returns how many requests were still waiting each time a batch was taken. A depth that keeps growing means
+   * requests are arriving faster than they can be classified.
+   * @return the queue depths seen so far
+   */
+  public Histogram getQueueDepths() {
+    return this.queueDepths;
+  }
+
+  /**
+   * The body of the batcher's thread: waits for a request, gathers a batch around it, then classifies the batch.
+   */
+  private void dispatch() {
+    List<Request> batch = new ArrayList<>(this.batchSize);
+    Scratch scratch = new Scratch(); // Shared by every request, so its arrays are only ever grown
+    try {
+      while (!this.closed) {
+        this.gather(batch);
+        this.batchSizes.record(batch.size());
+        this.queueDepths.record(this.queue.size());
+        for (Request request : batch) {
+          this.classify(request, scratch);
+        }
+        batch.clear();
+      }
+    }
+    catch (InterruptedException e) {
+      // Closed while waiting for requests
+    }
+    finally {
+      // Whatever ended the thread, refuse anything gathered but not run, and anything that slipped into the queue
+      // while closing, so no caller is left waiting on a future that never completes
+      this.closed = true;
+      this.queue.drainTo(batch);
+      for (Request request : batch) {
+        if (!request.future.isDone()) {
+          request.future.completeExceptionally(new RejectedExecutionException("The batcher was closed"));
+        }
+      }
+    }
+  }
+
+  /**
+   * Fills a batch: waits as long as it takes for the first request, then until the batch is full or the first
+   * request has waited maxWait.
+   * @param batch the empty list to fill
+   * @throws InterruptedException if the batcher is closed while waiting
+   */
+  private void gather(List<Request> batch) throws InterruptedException {
+    Request first = this.queue.take();
+    batch.add(first);
+    long deadline = first.arrival + this.maxWaitNanos;
+    while (batch.size() < this.batchSize) {
+      this.queue.drainTo(batch, this.batchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= this.batchSize || remaining <= 0) {
+        return;
+      }
+      Request next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  /**
+   * Classifies one request and completes its future.
+   * @param request the request
+   * @param scratch the working memory to classify with
+   */
+  private void classify(Request request, Scratch scratch) {
+    try {
+      ClassificationResult result = new ClassificationResult(); // Each caller keeps its own
+      this.recognizer.classify(request.source, scratch, result);
+      request.future.complete(result);
+    }
+    catch (RuntimeException e) {
+      request.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * An image waiting to be classified, and the future to complete with its result.
+   */
+  private static class Request {
+
+    private final PixelSource source;
+    private final long arrival; // When the request was submitted, from System.nanoTime
+    private final CompletableFuture<ClassificationResult> future = new CompletableFuture<>();
+
+    /**
+     * Creates a Request.
+     * @param source the image to classify
+     * @param arrival when the request was submitted, from System.nanoTime
+     */
+    Request(PixelSource source, long arrival) {
+      this.source = source;
+      this.arrival = arrival;
+    }
+
+  }
+
+}
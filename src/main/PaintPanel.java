@@ -1,14 +1,23 @@
 package main;
 
 import java.awt.Color;
+import java.awt.DisplayMode;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Objects;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * This is the object that the user actually draws on. It takes in mouse and keyboard input and alters the drawing.
@@ -19,20 +28,76 @@ public class PaintPanel extends JPanel {
   private final MListener mlistener;
   private final KListener klistener;
 
-  // Scale for each "pixel" on the drawing
-  public static final int SCALE = 50;
+  // Colors of the canvas pixels, in the packed RGB format of the canvas
+  private static final int INK = Color.BLACK.getRGB();
+  private static final int PAPER = Color.WHITE.getRGB();
 
+  // Where the live prediction is written, in the top left corner of the canvas
+  private static final Rectangle LIVE_LABEL = new Rectangle(0, 0, 90, 20);
+  private static final int DEFAULT_REFRESH_RATE = 60; // Updates per second when the display does not report its own
+
+  private final int scale; // The width (and height) of the board, in "pixels" of the drawing
+  private final int squareSize; // The width of each "pixel" on screen, so that every one fits
   private DrawingBoard board; // Where the drawing is stored/manipulated
-  private OptionalVisionBoard vb; // An optional VisionBoard, which stores the data actually used to compute shapes
+  private OptionalVisionBoard vb; // Follows the board, building the VisionBoard used to compute shapes only when read
   private final VisionWindow vw; // The window for the VisionBoard
+  private final DigitRecognizer classifier; // The engine that predicts which digit is drawn
+
+  // The drawing as it appears on screen. Its pixels are written directly as cells change, rather than redrawn each paint
+  private final BufferedImage canvas;
+  private final int[] pixels; // The canvas' own pixel array, one packed RGB int per pixel, row by row
+  private Rectangle overlay; // The screen area the crop grid was last drawn over, or null if it was not drawn
+
+  // The prediction shown while drawing. Strokes only mark the LiveGrid, which is brought up to date once per frame
+  private LiveGrid live;
+  private final Timer liveTimer; // Fires once, a frame after the first stroke since the last update
+  private final Scratch liveScratch = new Scratch();
+  private int livePrediction = -1; // The digit shown, or -1 for none
   
   // Whether or not the mouse is currently being dragged
   private boolean dragValue;
 
   /**
-   * Instantiates the PaintPanel with expected default values.
+   * Instantiates the PaintPanel with expected default values, predicting with the hand-written figure rules.
    */
   public PaintPanel() {
+    this(new DigitClassifier());
+  }
+
+  /**
+   * Instantiates the PaintPanel with expected default values.
+   * @param classifier the recognizer used to predict the digit
+   */
+  public PaintPanel(DigitRecognizer classifier) {
+    this(classifier, DrawingBoard.DEFAULT_SIZE);
+  }
+
+  /**
+   * Instantiates the PaintPanel with a board of the given size, for example DrawingBoard.MNIST_SIZE so drawings
+   * match the dataset exactly, or a larger size for finer input. Each classification is printed to the console
+   * through the sink every window shares.
+   * @param classifier the recognizer used to predict the digit
+   * @param scale the width (and height) of the board, in "pixels" of the drawing
+   * @throws IllegalArgumentException if the board would not fit on the window with at least one screen pixel per cell
+   */
+  public PaintPanel(DigitRecognizer classifier, int scale) {
+    this(classifier, scale, AsyncResultSink.sharedConsole());
+  }
+
+  /**
+   * Instantiates the PaintPanel with a board of the given size, sending each classification to the given sink.
+   * @param classifier the recognizer used to predict the digit
+   * @param scale the width (and height) of the board, in "pixels" of the drawing
+   * @param sink where to send each classification, for example the console or a JSON lines file
+   * @throws IllegalArgumentException if the board would not fit on the window with at least one screen pixel per cell
+   */
+  public PaintPanel(DigitRecognizer classifier, int scale, ResultSink sink) {
+    if (scale < 1 || scale > PaintWindow.WIDTH) {
+      throw new IllegalArgumentException("The board must be between 1 and " + PaintWindow.WIDTH + " cells wide");
+    }
+    this.scale = scale;
+    this.squareSize = PaintWindow.WIDTH / scale; // Ensures that all "pixel"s will fit on screen
+
     this.mlistener = new MListener();
     this.addMouseListener(mlistener); // JPanel implementation of mouse and key listeners
     this.addMouseMotionListener(mlistener);
@@ -41,12 +106,21 @@ public class PaintPanel extends JPanel {
     
     this.dragValue = true; // Drag value begins as true so if the user's first click is a drag it is interpreted correctly
     
-    this.vb = new EmptyVisionBoard(); // Since nothing is drawn, there is nothing for the program to analyze, we create an empty vision board
-    this.vw = new VisionWindow(vb); // Create a VisionWindow but don't show it
+    this.classifier = classifier; // The engine is shared with the VisionWindow so there is only one copy of the logic
+    this.vw = new VisionWindow(classifier, sink); // Create a VisionWindow but don't show it
 
     this.setFocusable(true); // Ensures that you can focus this window
 
-    this.board = new DrawingBoard(); // Creates a new DrawingBoard to enable drawing
+    this.board = new DrawingBoard(scale); // Creates a new DrawingBoard to enable drawing
+    this.vb = new LazyVisionBoard(board); // Nothing is built until the drawing is actually read
+    this.live = new LiveGrid(board, classifier.getGridSize());
+    this.liveTimer = new Timer(1000 / refreshRate(), e -> this.updateLive());
+    this.liveTimer.setRepeats(false); // Restarted by the next stroke, so nothing runs while the user is idle
+
+    int canvasSize = scale * this.squareSize;
+    this.canvas = new BufferedImage(canvasSize, canvasSize, BufferedImage.TYPE_INT_RGB);
+    this.pixels = ((DataBufferInt) this.canvas.getRaster().getDataBuffer()).getData();
+    Arrays.fill(this.pixels, PAPER); // Start with a blank white canvas
 
     this.repaint(); // Draws this component
   }
@@ -56,85 +130,55 @@ public class PaintPanel extends JPanel {
    * @param g the Graphics object used to draw
    */
   public void paintComponent(Graphics g) {
+    StageEvents.Render event = new StageEvents.Render();
+    event.begin();
+    int squareSize = this.squareSize;
 
-    // Ensures that all "pixel"s will fit on screen
-    int squareSize = PaintWindow.WIDTH / PaintPanel.SCALE;
-
-    // This will iterate through the DrawingBoard and turn black any pixel that is activated and white any pixel that isn't
-    for (int col = 0; col < PaintPanel.SCALE; col += 1) {
-      for (int row = 0; row < PaintPanel.SCALE; row += 1) {
-        if (this.board.getVal(col, row)) {
-          g.setColor(Color.BLACK);
-        }
-        else {
-          g.setColor(Color.WHITE);
-        }
-        g.fillRect(col * squareSize, row * squareSize, squareSize, squareSize);
-      }
-
-    }
+    // The canvas already holds the drawing, so this only copies it to the screen. Swing clips this to the region
+    // that was repainted, so a single brush stroke only copies the pixels around that stroke
+    g.drawImage(this.canvas, 0, 0, null);
 
     // If the OptionalVisionBoard stored has meaningful data, we will draw that as well
     if (this.vb.isVisionBoard()) {
-      VisionBoard vsBoard = this.vb.extract(); // Extract the VisionBoard
-      
-      // Find all of the edges of the board (we want to include as little whitespace in our board as possible to minimize bad data)
-      int left = vsBoard.findEdge("left");
-      int right = vsBoard.findEdge("right");
-      int top = vsBoard.findEdge("top");
-      int bottom = vsBoard.findEdge("bottom");
-
-      // Find the dimensions of the space found
-      int width = (right - left) + 1;
-      int height = (bottom - top) + 1;
-
-      // Here we must make our dimensions square. This ensures that further calculations accurately assess equal amounts of the board
-      if (height > width) {
-        left -= (height - width) / 2;
-        right += (height - width) / 2 + (height - width) % 2;
-        width = right - left + 1;
-      }
-      else if (width > height) {
-        top -= (width - height) / 2;
-        bottom += (width - height) / 2 + (width - height) % 2;
-        height = bottom - top + 1;
-      }
-
-      // This makes sure that the square that will encapsulate the drawing does not go off screen
-      if (bottom >= PaintPanel.SCALE) {
-        top -= bottom - PaintPanel.SCALE;
-        bottom = PaintPanel.SCALE - 1;
-      }
-      else if (top < 0) {
-        bottom -= top;
-        top = 0;
-      }
 
-      if (right >= PaintPanel.SCALE) {
-        left -= right - PaintPanel.SCALE;
-        right = PaintPanel.SCALE - 1;
-      }
-      else if (left < 0) {
-        right -= left;
-        left = 0;
-      }
+      // The square region around the drawing, which has as little whitespace as possible to minimize bad data.
+      // The DrawingBoard keeps its bounds up to date as it is drawn on, so this is the same square the VisionBoard takes in
+      CropRect crop = this.board.getCrop();
+      int left = crop.getLeft();
+      int top = crop.getTop();
+      int width = crop.getSize();
+      int height = crop.getSize();
 
       // Find the coordinates to draw an encapsulating rectangle around the drawing
       int leftCoord = left * squareSize;
       g.setColor(Color.DARK_GRAY);
       
-      // Draw an encapsulating rectangle around the entire drawing with 25 equal cells to show how the drawing will be simplified for computation
-      for (int col = 0; col < 5; col += 1) {
+      // Draw an encapsulating rectangle around the entire drawing with a cell for every grid cell to show how the drawing will be simplified for computation
+      int gridSize = this.classifier.getGridSize();
+      for (int col = 0; col < gridSize; col += 1) {
         int topCoord = top * squareSize;
-        for (int row = 0; row < 5; row += 1) {
-          g.drawRect(leftCoord, topCoord, width * squareSize / 5, height * squareSize / 5);
-          topCoord += height * squareSize / 5;
+        for (int row = 0; row < gridSize; row += 1) {
+          g.drawRect(leftCoord, topCoord, width * squareSize / gridSize, height * squareSize / gridSize);
+          topCoord += height * squareSize / gridSize;
         }
-        leftCoord += width * squareSize / 5;
+        leftCoord += width * squareSize / gridSize;
       }
 
     }
 
+    if (this.livePrediction >= 0) {
+      g.setColor(Color.GRAY);
+      g.drawString("Drawing a " + this.livePrediction, LIVE_LABEL.x + 5, LIVE_LABEL.y + 15);
+    }
+
+    if (event.shouldCommit()) {
+      Rectangle clip = g.getClipBounds();
+      event.panel = "Drawing";
+      event.clipWidth = clip != null ? clip.width : this.getWidth();
+      event.clipHeight = clip != null ? clip.height : this.getHeight();
+      event.commit();
+    }
+
   }
 
   /**
@@ -151,19 +195,126 @@ public class PaintPanel extends JPanel {
     int y = e.getY();
 
     // Set the board at the correct corresponding coordinates to the given value
-    board.setVal(x / (PaintWindow.WIDTH / PaintPanel.SCALE),
-        y / (PaintWindow.WIDTH / PaintPanel.SCALE), val);
-    
-    // Redraw so the user can see their action displayed
-    repaint();
-    
-    // If the board has nothing we must clear the VisionBoard, otherwise update it with a current VisionBoard
-    if (board.isEmpty()) {
-      vb = new EmptyVisionBoard();
+    int col = x / this.squareSize;
+    int row = y / this.squareSize;
+    if (x < 0 || y < 0 || col >= this.scale || row >= this.scale) {
+      return; // Off the board, including the strip left over when the window is not a whole number of cells wide
+    }
+    long before = board.getModCount();
+    board.setVal(col, row, val);
+    if (board.getModCount() == before) {
+      return; // Nothing changed, so there is nothing to redraw
     }
-    else {
-      vb = board.makeVisionBoard();
+
+    // Redraw only the cells the brush could have reached, so the user can see their action displayed.
+    // The VisionBoard follows the board by itself
+    int squareSize = this.squareSize;
+    int left = Math.max(col - 1, 0);
+    int top = Math.max(row - 1, 0);
+    int right = Math.min(col + 1, this.scale - 1);
+    int bottom = Math.min(row + 1, this.scale - 1);
+    for (int cellRow = top; cellRow <= bottom; cellRow += 1) {
+      for (int cellCol = left; cellCol <= right; cellCol += 1) {
+        this.paintCell(cellCol, cellRow, squareSize);
+      }
+    }
+    repaint(left * squareSize, top * squareSize, (right - left + 1) * squareSize, (bottom - top + 1) * squareSize);
+    this.repaintOverlay();
+
+    // The prediction follows at the next frame, however many strokes arrive before then
+    this.live.markChanged(left, top, right, bottom);
+    if (!this.liveTimer.isRunning()) {
+      this.liveTimer.start();
+    }
+  }
+
+  /**
+   * Brings the live prediction up to date with the board, and repaints it if it changed. Only the part of the grid
+   * the strokes since the last update reached is computed again, unless the crop moved.
+   */
+  private void updateLive() {
+    int prediction = -1;
+    if (this.live.update()) {
+      prediction = this.classifier.predictFigures(this.live.getFigures(), this.liveScratch);
+      if (prediction < 0) {
+        // This recognizer needs the whole drawing, not just its figures
+        try {
+          prediction = this.classifier.predict(this.board, this.liveScratch);
+        }
+        catch (IllegalArgumentException e) {
+          prediction = -1;
+        }
+      }
+    }
+    if (prediction != this.livePrediction) {
+      this.livePrediction = prediction;
+      repaint(LIVE_LABEL);
+    }
+  }
+
+  /**
+   * Finds how often the display refreshes, so the live prediction is updated no more often than it can be seen.
+   * @return the refresh rate in updates per second
+   */
+  private static int refreshRate() {
+    try {
+      DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+      if (mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN) {
+        return mode.getRefreshRate();
+      }
+    }
+    catch (HeadlessException e) {
+      // No display, so any rate will do
     }
+    return DEFAULT_REFRESH_RATE;
+  }
+
+  /**
+   * Writes one cell of the board straight into the canvas pixels.
+   * @param col the column of the cell
+   * @param row the row of the cell
+   * @param squareSize the width of each cell on screen
+   */
+  private void paintCell(int col, int row, int squareSize) {
+    int color = this.board.getVal(col, row) ? INK : PAPER;
+    int width = this.canvas.getWidth();
+    int start = row * squareSize * width + col * squareSize;
+    for (int line = 0; line < squareSize; line += 1) {
+      Arrays.fill(this.pixels, start, start + squareSize, color);
+      start += width;
+    }
+  }
+
+  /**
+   * Finds the screen area the crop grid covers for the current drawing.
+   * @param squareSize the width of each cell on screen
+   * @return the area of the grid, or null if there is no drawing to put one around
+   */
+  private Rectangle overlayBounds(int squareSize) {
+    if (!this.vb.isVisionBoard()) {
+      return null;
+    }
+    CropRect crop = this.board.getCrop();
+    int gridSize = this.classifier.getGridSize();
+    int extent = gridSize * (crop.getSize() * squareSize / gridSize) + 1; // drawRect covers one pixel past its width
+    return new Rectangle(crop.getLeft() * squareSize, crop.getTop() * squareSize, extent, extent);
+  }
+
+  /**
+   * Repaints the crop grid if it moved, both where it was and where it is now, so no stale lines are left behind.
+   */
+  private void repaintOverlay() {
+    Rectangle current = this.overlayBounds(this.squareSize);
+    if (Objects.equals(current, this.overlay)) {
+      return;
+    }
+    if (this.overlay != null) {
+      repaint(this.overlay);
+    }
+    if (current != null) {
+      repaint(current);
+    }
+    this.overlay = current;
   }
 
   /**
@@ -181,12 +332,25 @@ public class PaintPanel extends JPanel {
      */
     public void keyTyped(KeyEvent e) {
       if (e.getKeyChar() == '\b') {
-        vb = new EmptyVisionBoard();
-        board = new DrawingBoard();
-        vw.updateBoard(vb);
+        board = new DrawingBoard(scale);
+        vb = new LazyVisionBoard(board);
+        live = new LiveGrid(board, classifier.getGridSize());
+        livePrediction = -1;
+        Arrays.fill(pixels, PAPER);
+        overlay = null;
+        vw.clear();
         repaint();
       } else if (e.getKeyChar() == '\n') {
-        vw.updateBoard(vb);
+        // Classification runs on a worker thread against the VisionBoard, a copy of the relevant part of the board,
+        // so drawing is never held up by it. Pressing return again without drawing anything reuses the same copy.
+        // This panel never reads the VisionBoard itself: isVisionBoard asks the DrawingBoard, and the overlay uses
+        // the DrawingBoard's own crop, so the copy is only ever touched by the worker once it is handed over
+        if (!vb.isVisionBoard()) {
+          vw.clear();
+        }
+        else {
+          vw.classify(vb.extract());
+        }
         repaint();
       }
     }
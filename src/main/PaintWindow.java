@@ -1,5 +1,8 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import javax.swing.JFrame;
 
 /**
@@ -14,13 +17,49 @@ public class PaintWindow {
 
   /**
    * Runs the application.
-   * @param args SPVM main args
+   * @param args optionally, "templates" followed by a file saved by TemplateClassifier, or "tuned" followed by a file
+   * saved by TunedClassifier, to predict with instead of the hand-written figure rules. Either may be followed by
+   * "canvas" and the width of the board in cells, 28 to match MNIST or 50 by default, and "results" followed by
+   * "console" (the default), "none", or a file to append each classification to as a line of JSON
+   * @throws IOException if a file cannot be read, or the results file cannot be opened
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+
+    // Load the recognizer first, so a bad file stops the application before any window opens
+    DigitRecognizer recognizer = new DigitClassifier();
+    int scale = DrawingBoard.DEFAULT_SIZE;
+    String results = "console";
+    for (int idx = 0; idx < args.length; idx += 2) {
+      if (idx + 1 < args.length && args[idx].equals("templates")) {
+        recognizer = TemplateClassifier.load(Paths.get(args[idx + 1]));
+      }
+      else if (idx + 1 < args.length && args[idx].equals("tuned")) {
+        recognizer = TunedClassifier.load(Paths.get(args[idx + 1]));
+      }
+      else if (idx + 1 < args.length && args[idx].equals("canvas") && args[idx + 1].matches("\\d{1,3}")) {
+        scale = Integer.parseInt(args[idx + 1]);
+      }
+      else if (idx + 1 < args.length && args[idx].equals("results")) {
+        results = args[idx + 1];
+      }
+      else {
+        scale = 0; // Not a valid size, so the usage is printed below
+        break;
+      }
+    }
+    if (scale < 1 || scale > PaintWindow.WIDTH) {
+      System.out.println("Usage: PaintWindow [templates <file> | tuned <file>] [canvas <1-" + PaintWindow.WIDTH + ">]"
+          + " [results <console | none | file>]");
+      return;
+    }
+    ResultSink sink = results.equals("console") ? AsyncResultSink.console()
+        : results.equals("none") ? ResultSink.NONE
+        : AsyncResultSink.jsonLines(Paths.get(results));
+    Runtime.getRuntime().addShutdownHook(new Thread(sink::close)); // Write out the last results when the window closes
 
     PaintWindow.window = new JFrame("Drawing Tablet"); // Instantiate the window
     PaintWindow.window.setLocationRelativeTo(null); // Center it
-    PaintWindow.panel = new PaintPanel(); // Create a new panel to be painted on
+    PaintWindow.panel = new PaintPanel(recognizer, scale, sink); // Create a new panel to be painted on
 
     PaintWindow.window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Sets the window to close when the X is pressed
     
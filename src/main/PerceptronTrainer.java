@@ -0,0 +1,255 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fits the coefficients of a TunedClassifier to a labelled dataset with multiclass hinge loss updates: whenever the
+ * correct digit does not beat its strongest rival by at least MARGIN, the correct digit's coefficients are pulled
+ * toward that sample's features and the rival's are pushed away from them.
+ *
+ * The features of every sample are extracted once, up front, into one flat array. Training then runs in mini-batches:
+ * each batch is split across the threads of a ForkJoinPool, every thread sums the updates of its part against the
+ * same coefficients, and the sums are averaged into a single step. Since the batch is always split the same way,
+ * the result does not depend on how many threads there are.
+ */
+public class PerceptronTrainer {
+
+  public static final int DEFAULT_EPOCHS = 20; // Passes over the whole dataset
+  public static final double DEFAULT_RATE = 0.05; // How far each averaged step moves the coefficients
+  public static final double MARGIN = 0.1; // How far ahead of every rival the correct digit should be
+  private static final int BATCH_SIZE = 4096; // Samples averaged into each step
+  private static final int LEAF_SIZE = 256; // Samples are handed to threads in runs of at most this many
+  private static final long SEED = 0x5EED; // Fixes the order samples are visited in, so training can be repeated
+
+  private final ForkJoinPool pool;
+  private final double[] features; // Sample s holds feature f at index s * FEATURE_COUNT + f
+  private final int[] labels;
+  private final int count; // The amount of samples the pipeline could process
+
+  /**
+   * Extracts the features of every sample in a dataset on the common ForkJoinPool.
+   * @param dataset the labelled samples to train on
+   */
+  public PerceptronTrainer(IdxDataset dataset) {
+    this(dataset, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Extracts the features of every sample in a dataset on the given pool, which training will also run on.
+   * Samples the pipeline cannot process (empty or too small to divide into a grid) are left out.
+   * @param dataset the labelled samples to train on
+   * @param pool the pool to split the work across
+   */
+  public PerceptronTrainer(IdxDataset dataset, ForkJoinPool pool) {
+    this.pool = pool;
+    int size = dataset.size();
+    double[] extracted = new double[size * TunedClassifier.FEATURE_COUNT];
+    boolean[] usable = new boolean[size];
+    ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    pool.invoke(new Extract(0, size, dataset, extracted, usable, scratch));
+
+    // Close up the gaps left by unusable samples
+    int kept = 0;
+    int[] labels = new int[size];
+    for (int index = 0; index < size; index += 1) {
+      if (usable[index]) {
+        System.arraycopy(extracted, index * TunedClassifier.FEATURE_COUNT,
+            extracted, kept * TunedClassifier.FEATURE_COUNT, TunedClassifier.FEATURE_COUNT);
+        labels[kept] = dataset.getLabel(index);
+        kept += 1;
+      }
+    }
+    this.features = extracted;
+    this.labels = labels;
+    this.count = kept;
+  }
+
+  /**
+   * Returns the amount of samples being trained on.
+   * @return the amount of usable samples
+   */
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * Fits coefficients with the default amount of epochs and learning rate.
+   * @param initial the coefficients to start from, usually TunedClassifier.handWritten()
+   * @return the TunedClassifier using the fitted coefficients
+   */
+  public TunedClassifier train(double[] initial) {
+    return this.train(initial, DEFAULT_EPOCHS, DEFAULT_RATE);
+  }
+
+  /**
+   * Fits coefficients.
+   * @param initial the coefficients to start from, usually TunedClassifier.handWritten()
+   * @param epochs the amount of passes over the dataset
+   * @param rate how far each averaged step moves the coefficients
+   * @return the TunedClassifier using the fitted coefficients
+   */
+  public TunedClassifier train(double[] initial, int epochs, double rate) {
+    double[] coefficients = new TunedClassifier(initial).getCoefficients(); // Checks the length and copies
+    int[] order = new int[this.count];
+    for (int idx = 0; idx < this.count; idx += 1) {
+      order[idx] = idx;
+    }
+    Random random = new Random(SEED);
+
+    for (int epoch = 0; epoch < epochs; epoch += 1) {
+
+      // Visit the samples in a new order every epoch, so each batch is a fair mix of digits
+      for (int idx = this.count - 1; idx > 0; idx -= 1) {
+        int swap = random.nextInt(idx + 1);
+        int held = order[idx];
+        order[idx] = order[swap];
+        order[swap] = held;
+      }
+
+      for (int first = 0; first < this.count; first += BATCH_SIZE) {
+        int last = Math.min(first + BATCH_SIZE, this.count);
+        double[] step = this.pool.invoke(new Gradient(first, last, order, coefficients));
+        for (int idx = 0; idx < coefficients.length; idx += 1) {
+          coefficients[idx] += rate * step[idx] / (last - first);
+        }
+      }
+    }
+    return new TunedClassifier(coefficients);
+  }
+
+  /**
+   * Extracts the features of a range of samples, splitting it in half until each part is small enough for one thread.
+   */
+  private static class Extract extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L; // Tasks are never serialized, but ForkJoinTask is Serializable
+
+    private final int from;
+    private final int to;
+    private final IdxDataset dataset;
+    private final double[] features;
+    private final boolean[] usable;
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Creates an Extract over the given range.
+     * @param from the first sample (inclusive)
+     * @param to the last sample (exclusive)
+     * @param dataset the samples to read
+     * @param features where to write each sample's features
+     * @param usable where to mark the samples the pipeline could process
+     * @param scratch each thread's working memory
+     */
+    Extract(int from, int to, IdxDataset dataset, double[] features, boolean[] usable, ThreadLocal<Scratch> scratch) {
+      this.from = from;
+      this.to = to;
+      this.dataset = dataset;
+      this.features = features;
+      this.usable = usable;
+      this.scratch = scratch;
+    }
+
+    protected void compute() {
+      if (this.to - this.from > LEAF_SIZE) {
+        int mid = (this.from + this.to) >>> 1;
+        invokeAll(new Extract(this.from, mid, this.dataset, this.features, this.usable, this.scratch),
+            new Extract(mid, this.to, this.dataset, this.features, this.usable, this.scratch));
+        return;
+      }
+
+      Scratch own = this.scratch.get();
+      LayerOne l1 = own.grid(LayerOne.DEFAULT_SIZE);
+      double[] sampleFeatures = own.features(TunedClassifier.FEATURE_COUNT);
+      IdxDataset.Sample sample = this.dataset.new Sample();
+      for (int index = this.from; index < this.to; index += 1) {
+        sample.moveTo(index);
+        try {
+          own.vBoard.load(sample);
+          own.vBoard.generateGrid(l1);
+        }
+        catch (IllegalArgumentException e) {
+          continue;
+        }
+        TunedClassifier.extractFeatures(l1, own.figures, own.weights, sampleFeatures);
+        System.arraycopy(sampleFeatures, 0, this.features, index * TunedClassifier.FEATURE_COUNT,
+            TunedClassifier.FEATURE_COUNT);
+        this.usable[index] = true;
+      }
+    }
+
+  }
+
+  /**
+   * Sums the hinge loss updates of a run of samples, splitting it in half until each part is small enough for one
+   * thread, then adding the halves together.
+   */
+  private class Gradient extends RecursiveTask<double[]> {
+
+    private static final long serialVersionUID = 1L; // Tasks are never serialized, but ForkJoinTask is Serializable
+
+    private final int from;
+    private final int to;
+    private final int[] order;
+    private final double[] coefficients;
+
+    /**
+     * Creates a Gradient over the given run of the visiting order.
+     * @param from the first position in the order (inclusive)
+     * @param to the last position in the order (exclusive)
+     * @param order the order samples are visited in this epoch
+     * @param coefficients the coefficients every update is measured against, which are not changed
+     */
+    Gradient(int from, int to, int[] order, double[] coefficients) {
+      this.from = from;
+      this.to = to;
+      this.order = order;
+      this.coefficients = coefficients;
+    }
+
+    protected double[] compute() {
+      if (this.to - this.from > LEAF_SIZE) {
+        int mid = (this.from + this.to) >>> 1;
+        Gradient right = new Gradient(mid, this.to, this.order, this.coefficients);
+        right.fork();
+        double[] sum = new Gradient(this.from, mid, this.order, this.coefficients).compute();
+        double[] other = right.join();
+        for (int idx = 0; idx < sum.length; idx += 1) {
+          sum[idx] += other[idx];
+        }
+        return sum;
+      }
+
+      double[] step = new double[this.coefficients.length];
+      double[] weights = new double[DigitClassifier.DIGIT_COUNT];
+      for (int pos = this.from; pos < this.to; pos += 1) {
+        int sample = this.order[pos];
+        int offset = sample * TunedClassifier.FEATURE_COUNT;
+        int label = PerceptronTrainer.this.labels[sample];
+        TunedClassifier.score(this.coefficients, PerceptronTrainer.this.features, offset, weights);
+
+        // The strongest digit that is not the right one
+        int rival = label == 0 ? 1 : 0;
+        for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+          if (digit != label && weights[digit] > weights[rival]) {
+            rival = digit;
+          }
+        }
+
+        if (weights[rival] + MARGIN > weights[label]) {
+          for (int idx = 0; idx < TunedClassifier.FEATURE_COUNT; idx += 1) {
+            double value = PerceptronTrainer.this.features[offset + idx];
+            step[label * TunedClassifier.FEATURE_COUNT + idx] += value;
+            step[rival * TunedClassifier.FEATURE_COUNT + idx] -= value;
+          }
+        }
+      }
+      return step;
+    }
+
+  }
+
+}
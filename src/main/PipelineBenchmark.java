@@ -0,0 +1,304 @@
+package main;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+/**
+ * Measures every stage of the recognition pipeline separately, from drawing on a DrawingBoard through to the
+ * predicted digit. Each stage is warmed up, then timed over several iterations, and reported as the average time
+ * per operation along with the bytes allocated per operation and the allocation rate.
+ *
+ * The fixtures are recorded drawings of each digit, or MNIST samples when a pair of IDX files is given:
+ * java main.PipelineBenchmark [images-idx3-ubyte labels-idx1-ubyte]
+ *
+ * Any change to the performance of the pipeline should come with the output of this before and after the change.
+ */
+public class PipelineBenchmark {
+
+  private static final long WARMUP_NANOS = 2_000_000_000L; // Time to let the JIT settle before measuring
+  private static final int ITERATIONS = 5; // Measured iterations per stage
+  private static final long ITERATION_NANOS = 1_000_000_000L; // Length of each measured iteration
+  private static final int FIXTURES = 512; // The most MNIST samples to use as fixtures
+
+  // Strokes of each recorded digit, 0 through 9. Each stroke is a run of (col, row) points on a 50x50 board,
+  // drawn with straight lines between them as if the mouse were dragged
+  private static final int[][][] RECORDED = {
+    {{25, 8, 18, 11, 14, 18, 13, 26, 15, 35, 20, 41, 25, 42, 31, 40, 35, 34, 37, 25, 35, 15, 31, 10, 25, 8}},
+    {{25, 8, 25, 42}},
+    {{15, 15, 20, 9, 30, 9, 35, 15, 33, 22, 15, 40, 36, 40}},
+    {{15, 10, 33, 10, 25, 23, 34, 30, 30, 40, 15, 40}},
+    {{30, 8, 13, 30, 37, 30}, {30, 8, 30, 42}},
+    {{35, 9, 17, 9, 16, 23, 30, 22, 35, 30, 30, 40, 15, 40}},
+    {{32, 9, 18, 20, 15, 32, 22, 41, 32, 38, 33, 28, 22, 25, 16, 32}},
+    {{14, 9, 36, 9, 22, 42}},
+    {{25, 9, 17, 15, 25, 24, 33, 15, 25, 9}, {25, 24, 16, 33, 25, 42, 34, 33, 25, 24}},
+    {{33, 18, 25, 9, 17, 16, 24, 25, 33, 18, 33, 42}}
+  };
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static long sink; // Results are folded in here so the JIT cannot discard the work being measured
+
+  /**
+   * A single operation of the stage being measured.
+   */
+  private interface Operation {
+
+    /**
+     * Runs the operation once.
+     * @param iteration how many times the operation has run, used to cycle through fixtures
+     * @return any value derived from the result, so the work is not optimized away
+     */
+    long run(int iteration);
+
+  }
+
+  /**
+   * Runs the benchmark suite.
+   * @param args optionally, an IDX image file and label file to draw the fixtures from
+   * @throws IOException if the IDX files cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    PixelSource[] sources = args.length >= 2 ? mnistFixtures(args[0], args[1]) : recordedFixtures();
+    DrawingBoard[] boards = recordedFixtures();
+
+    // Every stage after the first is fed the output of the one before, prepared ahead of time
+    VisionBoard[] vBoards = new VisionBoard[sources.length];
+    LayerOne[] grids = new LayerOne[sources.length];
+    double[][] figures = new double[sources.length][DigitClassifier.FIGURE_COUNT];
+    for (int idx = 0; idx < sources.length; idx += 1) {
+      vBoards[idx] = new VisionBoard(sources[idx]);
+      grids[idx] = vBoards[idx].generateGrid();
+      grids[idx].scoreFigures(figures[idx]);
+    }
+
+    System.out.println("Fixtures: " + sources.length + (args.length >= 2 ? " MNIST samples" : " recorded digits"));
+    System.out.printf("%-28s %14s %14s %14s%n", "Stage", "ns/op", "alloc B/op", "alloc MB/s");
+
+    DrawingBoard scratchBoard = new DrawingBoard();
+    int side = scratchBoard.size();
+    measure("DrawingBoard.setVal", i -> {
+      scratchBoard.setVal(i % side, (i / side) % side, (i & 4096) == 0);
+      return scratchBoard.getActiveCount();
+    });
+    measure("DrawingBoard.isEmpty", i -> boards[i % boards.length].isEmpty() ? 1 : 0);
+    measure("DrawingBoard.getCrop", i -> boards[i % boards.length].getCrop().getSize());
+
+    ByteBuffer encodeBuffer = ByteBuffer.allocate(BoardCodec.maxEncodedSize(side));
+    measure("BoardCodec.write", i -> {
+      encodeBuffer.clear();
+      BoardCodec.write(boards[i % boards.length], i % DigitClassifier.DIGIT_COUNT, true, encodeBuffer);
+      return encodeBuffer.position();
+    });
+    ByteBuffer[] encoded = new ByteBuffer[sources.length];
+    DrawingBoard[] decoded = new DrawingBoard[sources.length]; // Reused targets, one per fixture since sizes may differ
+    for (int idx = 0; idx < sources.length; idx += 1) {
+      encoded[idx] = ByteBuffer.allocate(BoardCodec.maxEncodedSize(sources[idx].size()));
+      BoardCodec.write(sources[idx], BoardCodec.NO_LABEL, true, encoded[idx]);
+      encoded[idx].flip();
+      decoded[idx] = new DrawingBoard(sources[idx].size());
+    }
+    measure("BoardCodec.read (reused)", i -> {
+      ByteBuffer in = encoded[i % encoded.length];
+      in.rewind();
+      try {
+        return BoardCodec.read(in, decoded[i % decoded.length]).getSize();
+      }
+      catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+
+    measure("VisionBoard construction", i -> new VisionBoard(sources[i % sources.length]).getCrop().getLeft());
+    VisionBoard reused = new VisionBoard();
+    measure("VisionBoard.load (reused)", i -> {
+      reused.load(sources[i % sources.length]);
+      return reused.getCrop().getTop();
+    });
+
+    LayerOne target = new LayerOne();
+    measure("VisionBoard.generateGrid", i -> {
+      // A fresh load each time, so the summed-area table is rebuilt as it would be for a new drawing
+      reused.load(sources[i % sources.length]);
+      reused.generateGrid(target);
+      return Double.doubleToLongBits(target.getGrid()[i % 25]);
+    });
+
+    // A stamp in the middle of a recorded 8 is drawn and erased in turn, which never moves the crop, so this is the
+    // cost of keeping the grid and figures up to date for one stroke while drawing
+    DrawingBoard liveBoard = recordedFixtures()[8];
+    LiveGrid live = new LiveGrid(liveBoard, LayerOne.DEFAULT_SIZE);
+    live.update();
+    int center = liveBoard.size() / 2;
+    measure("LiveGrid.update (one stamp)", i -> {
+      liveBoard.setVal(center, center, (i & 1) == 0);
+      live.markChanged(center - 1, center - 1, center + 1, center + 1);
+      live.update();
+      return Double.doubleToLongBits(live.getFigures()[i % DigitClassifier.FIGURE_COUNT]);
+    });
+
+    for (int figure = 0; figure < DigitClassifier.FIGURE_COUNT; figure += 1) {
+      int index = figure;
+      measure("LayerOne.hasFigure" + (char) ('A' + figure),
+          i -> Double.doubleToLongBits(grids[i % grids.length].hasFigure(index)));
+    }
+    double[] scored = new double[DigitClassifier.FIGURE_COUNT];
+    measure("LayerOne.scoreFigures", i -> {
+      grids[i % grids.length].scoreFigures(scored);
+      return Double.doubleToLongBits(scored[i % scored.length]);
+    });
+
+    double[] copy = new double[DigitClassifier.FIGURE_COUNT];
+    double[] weights = new double[DigitClassifier.DIGIT_COUNT];
+    measure("DigitClassifier.scoreDigits", i -> {
+      // scoreDigits adjusts K and E in place, so it works on a copy of the fixture
+      System.arraycopy(figures[i % figures.length], 0, copy, 0, copy.length);
+      DigitClassifier.scoreDigits(copy, weights);
+      return Double.doubleToLongBits(weights[i % weights.length]);
+    });
+
+    DigitClassifier classifier = new DigitClassifier();
+    Scratch scratch = new Scratch();
+    measure("End to end (classify)", i -> classifier.classify(new VisionBoard(sources[i % sources.length])).getPrediction());
+    measure("End to end (predict)", i -> classifier.predict(sources[i % sources.length], scratch));
+    ClassificationResult reusedResult = new ClassificationResult();
+    measure("End to end (classify, reused)", i -> {
+      classifier.classify(sources[i % sources.length], scratch, reusedResult);
+      return Double.doubleToLongBits(reusedResult.getMargin());
+    });
+
+    // The templates need labelled samples to train on, so they are only measured against an IDX dataset
+    if (args.length >= 2) {
+      IdxDataset dataset = IdxDataset.open(Paths.get(args[0]), Paths.get(args[1]));
+      for (int resolution : new int[] {TemplateClassifier.GRID_RESOLUTION, TemplateClassifier.CROP_RESOLUTION}) {
+        TemplateClassifier templates = TemplateClassifier.train(dataset, resolution);
+        measure("End to end (templates " + resolution + "x" + resolution + ")",
+            i -> templates.predict(sources[i % sources.length], scratch));
+      }
+    }
+
+    System.out.println("(sink " + sink + ")");
+  }
+
+  /**
+   * Warms up and then measures one stage, printing a line of results.
+   * @param name the name of the stage
+   * @param operation the operation to measure
+   */
+  private static void measure(String name, Operation operation) {
+    int iteration = 0;
+    long end = System.nanoTime() + WARMUP_NANOS;
+    while (System.nanoTime() < end) {
+      for (int batch = 0; batch < 1024; batch += 1) {
+        sink += operation.run(iteration);
+        iteration = (iteration + 1) & Integer.MAX_VALUE; // Stays positive so it can index fixtures
+      }
+    }
+
+    long totalOps = 0;
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (int round = 0; round < ITERATIONS; round += 1) {
+      long bytesBefore = allocatedBytes();
+      long start = System.nanoTime();
+      long stop = start + ITERATION_NANOS;
+      long ops = 0;
+      long now;
+      do {
+        for (int batch = 0; batch < 1024; batch += 1) {
+          sink += operation.run(iteration);
+          iteration = (iteration + 1) & Integer.MAX_VALUE;
+        }
+        ops += 1024;
+        now = System.nanoTime();
+      } while (now < stop);
+      totalBytes += allocatedBytes() - bytesBefore;
+      totalNanos += now - start;
+      totalOps += ops;
+    }
+
+    double nanosPerOp = (double) totalNanos / totalOps;
+    double bytesPerOp = (double) totalBytes / totalOps;
+    double megabytesPerSecond = totalBytes / (totalNanos / 1e9) / (1024 * 1024);
+    System.out.printf("%-28s %14.2f %14.2f %14.2f%n", name, nanosPerOp, bytesPerOp, megabytesPerSecond);
+  }
+
+  /**
+   * Returns the bytes allocated so far by the current thread, or 0 if the JVM cannot tell.
+   * @return the allocated bytes
+   */
+  private static long allocatedBytes() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+    }
+    return 0L;
+  }
+
+  /**
+   * Draws every recorded digit onto its own DrawingBoard.
+   * @return the drawings of 0 through 9
+   */
+  private static DrawingBoard[] recordedFixtures() {
+    DrawingBoard[] boards = new DrawingBoard[RECORDED.length];
+    for (int digit = 0; digit < RECORDED.length; digit += 1) {
+      boards[digit] = new DrawingBoard();
+      for (int[] stroke : RECORDED[digit]) {
+        for (int point = 2; point < stroke.length; point += 2) {
+          drawLine(boards[digit], stroke[point - 2], stroke[point - 1], stroke[point], stroke[point + 1]);
+        }
+      }
+    }
+    return boards;
+  }
+
+  /**
+   * Draws a straight line one brush stroke at a time, the way a mouse drag would.
+   * @param board the board to draw on
+   * @param fromCol the starting column
+   * @param fromRow the starting row
+   * @param toCol the ending column
+   * @param toRow the ending row
+   */
+  private static void drawLine(DrawingBoard board, int fromCol, int fromRow, int toCol, int toRow) {
+    int steps = Math.max(Math.abs(toCol - fromCol), Math.abs(toRow - fromRow));
+    for (int step = 0; step <= steps; step += 1) {
+      int col = fromCol + (steps == 0 ? 0 : (toCol - fromCol) * step / steps);
+      int row = fromRow + (steps == 0 ? 0 : (toRow - fromRow) * step / steps);
+      board.setVal(col, row, true);
+    }
+  }
+
+  /**
+   * Takes the first samples of an IDX dataset that the pipeline can classify.
+   * @param images the image file
+   * @param labels the label file
+   * @return the samples
+   * @throws IOException if either file cannot be read
+   */
+  private static PixelSource[] mnistFixtures(String images, String labels) throws IOException {
+    IdxDataset dataset = IdxDataset.open(Paths.get(images), Paths.get(labels));
+    DigitClassifier classifier = new DigitClassifier();
+    Scratch scratch = new Scratch();
+
+    PixelSource[] found = new PixelSource[Math.min(FIXTURES, dataset.size())];
+    int count = 0;
+    for (int index = 0; index < dataset.size() && count < found.length; index += 1) {
+      IdxDataset.Sample sample = dataset.sample(index);
+      try {
+        classifier.predict(sample, scratch);
+        found[count] = sample;
+        count += 1;
+      }
+      catch (IllegalArgumentException e) {
+        // Skip samples that are too small to divide into a grid
+      }
+    }
+
+    PixelSource[] sources = new PixelSource[count];
+    System.arraycopy(found, 0, sources, 0, count);
+    return sources;
+  }
+
+}
@@ -0,0 +1,52 @@
+package main;
+
+/**
+ * A square image of active and inactive pixels that a VisionBoard can take in as its percept.
+ * Indices are (col, row) from top left (0,0) to bottom right, the same as the DrawingBoard.
+ */
+public interface PixelSource {
+
+  /**
+   * Returns the width (and height) of this image.
+   * @return the number of pixels along each side
+   */
+  int size();
+
+  /**
+   * Returns whether the pixel at the given indices is active.
+   * @param col the column to check
+   * @param row the row to check
+   * @return whether that pixel is active
+   */
+  boolean getVal(int col, int row);
+
+  /**
+   * Returns a run of up to 64 pixels from one row, packed into a long. Bit i of the result holds the pixel
+   * at (col + i, row), and every bit at or past len is zero.
+   * Sources that are already bit packed should override this so rows can be copied a word at a time.
+   * @param col the first column of the run
+   * @param row the row to read
+   * @param len the amount of pixels to read, from 1 to 64
+   * @return the packed pixels
+   */
+  default long getBits(int col, int row, int len) {
+    long bits = 0L;
+    for (int idx = 0; idx < len; idx += 1) {
+      if (this.getVal(col + idx, row)) {
+        bits |= 1L << idx;
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Returns the square region around every active pixel of this image.
+   * Sources that track their own bounds should override this to avoid scanning the image.
+   * @return the CropRect of this image
+   * @throws IllegalArgumentException if the image has no active pixels
+   */
+  default CropRect getCrop() {
+    return CropRect.scan(this);
+  }
+
+}
@@ -0,0 +1,65 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A ResultSink that keeps the most recent results in memory, overwriting the oldest once it is full.
+ * Publishing claims a slot with a single atomic increment, so any amount of threads can publish without locking,
+ * and nothing is written anywhere, so there is no need for a writer thread.
+ */
+public class ResultRing implements ResultSink {
+
+  private final AtomicReferenceArray<ClassificationResult> slots;
+  private final AtomicLong published = new AtomicLong(); // Every result ever published, which also picks the next slot
+
+  /**
+   * Creates an empty ResultRing.
+   * @param capacity the most results to keep
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public ResultRing(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The ring must hold at least one result");
+    }
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * Keeps a finished classification, overwriting the oldest one held once the ring is full.
+   * @param result the classification, which must not be changed afterwards
+   */
+  public void publish(ClassificationResult result) {
+    long sequence = this.published.getAndIncrement();
+    this.slots.set((int) (sequence % this.slots.length()), result);
+  }
+
+  /**
+   * Returns how many results have ever been published, including those since overwritten.
+   * @return the amount of results published
+   */
+  public long getPublished() {
+    return this.published.get();
+  }
+
+  /**
+   * Returns the results still held, oldest first. While other threads are publishing this is a best effort:
+   * a slot being overwritten may already hold its newer result.
+   * @return the most recent results, at most the capacity of the ring
+   */
+  public List<ClassificationResult> latest() {
+    long end = this.published.get();
+    long start = Math.max(0, end - this.slots.length());
+    List<ClassificationResult> results = new ArrayList<>((int) (end - start));
+    for (long sequence = start; sequence < end; sequence += 1) {
+      ClassificationResult result = this.slots.get((int) (sequence % this.slots.length()));
+      if (result != null) {
+        results.add(result); // Null only if the slot was claimed but not yet filled
+      }
+    }
+    return results;
+  }
+
+}
@@ -0,0 +1,25 @@
+package main;
+
+/**
+ * Somewhere to send each finished classification, so the code that classifies never has to know whether the result
+ * is printed, logged to a file, kept in memory or thrown away. Publishing must never block on I/O, since it is
+ * called on the thread that classifies.
+ */
+public interface ResultSink {
+
+  ResultSink NONE = result -> { }; // Throws every result away
+
+  /**
+   * Hands over a finished classification. The result must not be changed afterwards.
+   * @param result the classification
+   */
+  void publish(ClassificationResult result);
+
+  /**
+   * Finishes any results that are still on their way and releases whatever the sink holds.
+   */
+  default void close() {
+    // Nothing to release by default
+  }
+
+}
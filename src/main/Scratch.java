@@ -0,0 +1,39 @@
+package main;
+
+/**
+ * The working memory needed to recognize one image at a time: a VisionBoard, a LayerOne, the figure and digit
+ * weights, and whatever features a DigitRecognizer extracts. It is not thread safe, so each thread should hold its own.
+ */
+public class Scratch {
+
+  final VisionBoard vBoard = new VisionBoard();
+  private LayerOne l1 = new LayerOne();
+  final double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+  final double[] weights = new double[DigitClassifier.DIGIT_COUNT];
+  private double[] features = new double[0];
+
+  /**
+   * Returns a LayerOne of the given size to fill, replacing the last one if it was a different size.
+   * @param size the width (and height) of the grid
+   * @return the LayerOne, whose grid is left over from the last image
+   */
+  LayerOne grid(int size) {
+    if (this.l1.getSize() != size) {
+      this.l1 = new LayerOne(size);
+    }
+    return this.l1;
+  }
+
+  /**
+   * Returns an array of at least the given length to extract features into, growing it if it is too short.
+   * @param length the amount of features needed
+   * @return the feature array, whose contents are left over from the last image
+   */
+  double[] features(int length) {
+    if (this.features.length < length) {
+      this.features = new double[length];
+    }
+    return this.features;
+  }
+
+}
@@ -0,0 +1,131 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for each stage of recognizing a digit, so a recording shows where the time goes without
+ * attaching a profiler. Each stage creates its event, calls begin before the work and commit after it, and only fills
+ * in the sizes once shouldCommit says the event is wanted. With the recorder off, shouldCommit is always false and
+ * the JIT removes the event entirely, so the stages cost nothing extra.
+ *
+ * Every event is in the "Digit Recognition" category. A recording is summarized with, for example:
+ * jfr print --events main.Crop,main.Grid,main.Figures,main.Digits,main.Render recording.jfr
+ * or jfr summary recording.jfr for counts only (see the README for more).
+ */
+final class StageEvents {
+
+  private static final String CATEGORY = "Digit Recognition";
+
+  private StageEvents() {
+    // Only holds the event classes
+  }
+
+  /**
+   * Cropping the image down to the square around the drawing and copying it into a VisionBoard.
+   */
+  @Name("main.Crop")
+  @Label("Crop")
+  @Category(CATEGORY)
+  @Description("Copying the square around the drawing into a VisionBoard")
+  @StackTrace(false)
+  static final class Crop extends Event {
+
+    @Label("Image Width")
+    int imageWidth; // The width of the whole image, in pixels
+
+    @Label("Crop Width")
+    int cropWidth; // The width of the square around the drawing
+
+    @Label("Active Pixels")
+    int activeCount;
+
+  }
+
+  /**
+   * Simplifying the cropped drawing into a LayerOne grid.
+   */
+  @Name("main.Grid")
+  @Label("Generate Grid")
+  @Category(CATEGORY)
+  @Description("Averaging the cropped drawing into a LayerOne grid")
+  @StackTrace(false)
+  static final class Grid extends Event {
+
+    @Label("Crop Width")
+    int cropWidth;
+
+    @Label("Grid Size")
+    int gridSize;
+
+  }
+
+  /**
+   * Running every figure rule over a LayerOne grid.
+   */
+  @Name("main.Figures")
+  @Label("Figure Pass")
+  @Category(CATEGORY)
+  @Description("Estimating the weight of all 19 figures from a LayerOne grid")
+  @StackTrace(false)
+  static final class Figures extends Event {
+
+    @Label("Grid Size")
+    int gridSize;
+
+  }
+
+  /**
+   * Combining the figure weights into a weight for each digit.
+   */
+  @Name("main.Digits")
+  @Label("Digit Scoring")
+  @Category(CATEGORY)
+  @Description("Combining the figure weights into digit weights")
+  @StackTrace(false)
+  static final class Digits extends Event {
+
+    @Label("Winning Digit")
+    int prediction;
+
+    @Label("Margin")
+    @Description("How far the winning digit's weight is ahead of the next highest")
+    double margin;
+
+    /**
+     * Records the winning digit (ties go to the lowest) and its lead over the runner up.
+     * @param weights the digit weights
+     */
+    void setWeights(double[] weights) {
+      this.prediction = ClassificationResult.highestWeight(weights);
+      this.margin = ClassificationResult.margin(weights, this.prediction);
+    }
+
+  }
+
+  /**
+   * Painting one of the windows.
+   */
+  @Name("main.Render")
+  @Label("Render")
+  @Category(CATEGORY)
+  @Description("Painting the drawing window or the vision window")
+  @StackTrace(false)
+  static final class Render extends Event {
+
+    @Label("Panel")
+    String panel;
+
+    @Label("Clip Width")
+    int clipWidth; // The width of the region repainted, in screen pixels
+
+    @Label("Clip Height")
+    int clipHeight;
+
+  }
+
+}
@@ -0,0 +1,285 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Recognizes digits by comparing a drawing to a template of each digit, rather than by the hand-written figure rules.
+ * A template is the average of every training sample of its digit, resampled onto a square grid, so each of its
+ * values is how likely that part of the grid is to be drawn on for that digit. The prediction is the digit whose
+ * template is nearest to the drawing.
+ *
+ * The templates are stored in one flat array, digit by digit, so the distances to all ten are computed in a single
+ * pass with no objects in the way.
+ */
+public class TemplateClassifier implements DigitRecognizer {
+
+  public static final int GRID_RESOLUTION = LayerOne.DEFAULT_SIZE; // The same 5x5 resolution the figure rules work at
+  public static final int CROP_RESOLUTION = 20; // Close to the full resolution of a cropped MNIST digit
+  private static final int FILE_MAGIC = 0x54504C54; // "TPLT", the start of a saved template file
+
+  private final int resolution; // The width (and height) of each template
+  private final int cells; // The amount of values in each template
+  private final double[] templates; // Template d holds cell i at index d * cells + i, in the order of VisionBoard.resample
+  private final double[] norms; // The squared length of each template, so distances need only one dot product
+
+  /**
+   * Creates a TemplateClassifier from already trained templates.
+   * @param resolution the width (and height) of each template
+   * @param templates the ten templates one after another, each laid out as VisionBoard.resample fills it
+   * @throws IllegalArgumentException if there are not exactly ten templates of that resolution
+   */
+  public TemplateClassifier(int resolution, double[] templates) {
+    if (resolution < 1 || templates.length != DigitClassifier.DIGIT_COUNT * resolution * resolution) {
+      throw new IllegalArgumentException("Expected " + DigitClassifier.DIGIT_COUNT + " templates of "
+          + resolution + "x" + resolution);
+    }
+    this.resolution = resolution;
+    this.cells = resolution * resolution;
+    this.templates = templates.clone();
+    this.norms = new double[DigitClassifier.DIGIT_COUNT];
+    for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+      double norm = 0.0;
+      for (int idx = digit * this.cells; idx < (digit + 1) * this.cells; idx += 1) {
+        norm += this.templates[idx] * this.templates[idx];
+      }
+      this.norms[digit] = norm;
+    }
+  }
+
+  /**
+   * Trains a template of each digit by averaging every sample of that digit in the dataset.
+   * Empty samples, which the pipeline cannot process, are skipped.
+   * @param dataset the labelled samples to train on
+   * @param resolution the width (and height) of the templates
+   * @return the trained TemplateClassifier
+   */
+  public static TemplateClassifier train(IdxDataset dataset, int resolution) {
+    int cells = resolution * resolution;
+    double[] sums = new double[DigitClassifier.DIGIT_COUNT * cells];
+    int[] counts = new int[DigitClassifier.DIGIT_COUNT];
+
+    VisionBoard vBoard = new VisionBoard();
+    double[] features = new double[cells];
+    IdxDataset.Sample sample = dataset.new Sample();
+    for (int index = 0; index < dataset.size(); index += 1) {
+      sample.moveTo(index);
+      try {
+        vBoard.load(sample);
+      }
+      catch (IllegalArgumentException e) {
+        continue;
+      }
+      vBoard.resample(features, resolution);
+
+      int digit = sample.getLabel();
+      for (int idx = 0; idx < cells; idx += 1) {
+        sums[digit * cells + idx] += features[idx];
+      }
+      counts[digit] += 1;
+    }
+
+    // A digit with no samples keeps an empty template
+    for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+      for (int idx = digit * cells; counts[digit] > 0 && idx < (digit + 1) * cells; idx += 1) {
+        sums[idx] /= counts[digit];
+      }
+    }
+    return new TemplateClassifier(resolution, sums);
+  }
+
+  /**
+   * Returns the width (and height) of each template.
+   * @return the resolution
+   */
+  public int getResolution() {
+    return this.resolution;
+  }
+
+  /**
+   * Returns the value of one cell of a template.
+   * @param digit the digit whose template to read
+   * @param col the column of the cell
+   * @param row the row of the cell
+   * @return how likely that cell is to be drawn on for that digit, from 0 to 1
+   */
+  public double getTemplate(int digit, int col, int row) {
+    return this.templates[digit * this.cells + row * this.resolution + col];
+  }
+
+  /**
+   * Classifies the drawing stored in the given VisionBoard. The weight of each digit is how similar the drawing is to
+   * its template, from 1 for identical down to 0 for completely opposite. The figures are not used to decide anything,
+   * they are filled in so the result can be displayed the same way as the figure rules'. A drawing too small to be
+   * divided into a 5x5 grid is still classified, with every figure left at 0.
+   * @param vBoard the VisionBoard to classify
+   * @return the result of the classification
+   */
+  public ClassificationResult classify(VisionBoard vBoard) {
+    double[] features = new double[this.cells];
+    double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+    double[] weights = new double[DigitClassifier.DIGIT_COUNT];
+
+    vBoard.resample(features, this.resolution);
+    this.similarities(features, weights);
+    try {
+      vBoard.generateGrid().scoreFigures(figures);
+    }
+    catch (IllegalArgumentException e) {
+      // Too small for the figures, but the templates do not need them
+    }
+
+    return new ClassificationResult(figures, weights);
+  }
+
+  /**
+   * {@inheritDoc} Like classify(VisionBoard), a drawing too small to be divided into a 5x5 grid is still classified,
+   * with every figure left at 0.
+   * @throws IllegalArgumentException if there is no drawing
+   */
+  public void classify(PixelSource source, Scratch scratch, ClassificationResult result) {
+    double[] features = scratch.features(this.cells);
+    LayerOne l1 = scratch.grid(LayerOne.DEFAULT_SIZE);
+    scratch.vBoard.load(source);
+    scratch.vBoard.resample(features, this.resolution);
+    this.similarities(features, scratch.weights);
+    try {
+      scratch.vBoard.generateGrid(l1);
+      l1.scoreFigures(scratch.figures);
+    }
+    catch (IllegalArgumentException e) {
+      Arrays.fill(scratch.figures, 0.0); // Too small for the figures, but the templates do not need them
+    }
+    result.set(scratch.figures, scratch.weights);
+  }
+
+  /**
+   * {@inheritDoc} The prediction is the digit whose template is nearest, and the figures are not computed at all.
+   * @return the digit whose template is nearest
+   * @throws IllegalArgumentException if there is no drawing
+   */
+  public int predict(PixelSource source, Scratch scratch) {
+    double[] features = scratch.features(this.cells);
+    scratch.vBoard.load(source);
+    scratch.vBoard.resample(features, this.resolution);
+    this.similarities(features, scratch.weights);
+    return ClassificationResult.highestWeight(scratch.weights);
+  }
+
+  /**
+   * Computes how similar the given features are to every template, as 1 less the squared distance per cell, so the
+   * nearest template has the highest weight. Since |x - t|^2 = |x|^2 - 2 x.t + |t|^2 and the template lengths are
+   * known ahead of time, each distance costs a single dot product.
+   * @param features the resampled drawing
+   * @param weights the array to fill, indexed by digit
+   */
+  private void similarities(double[] features, double[] weights) {
+    double length = 0.0;
+    for (int idx = 0; idx < this.cells; idx += 1) {
+      length += features[idx] * features[idx];
+    }
+    for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+      int offset = digit * this.cells;
+      double dot = 0.0;
+      for (int idx = 0; idx < this.cells; idx += 1) {
+        dot += features[idx] * this.templates[offset + idx];
+      }
+      weights[digit] = 1.0 - (length - 2.0 * dot + this.norms[digit]) / this.cells;
+    }
+  }
+
+  /**
+   * Saves these templates so they can be loaded without training again.
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(this.resolution);
+      for (double value : this.templates) {
+        out.writeDouble(value);
+      }
+    }
+  }
+
+  /**
+   * Loads templates saved by save.
+   * @param file the file to read
+   * @return the TemplateClassifier using those templates
+   * @throws IOException if the file cannot be read or does not hold templates
+   */
+  public static TemplateClassifier load(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FILE_MAGIC) {
+        throw new IOException("Not a template file");
+      }
+      int resolution = in.readInt();
+      if (resolution < 1 || resolution > 1024) {
+        throw new IOException("Invalid template resolution " + resolution);
+      }
+      double[] templates = new double[DigitClassifier.DIGIT_COUNT * resolution * resolution];
+      for (int idx = 0; idx < templates.length; idx += 1) {
+        templates[idx] = in.readDouble();
+      }
+      return new TemplateClassifier(resolution, templates);
+    }
+  }
+
+  /**
+   * Trains templates at both resolutions on one pair of IDX files, then compares them to the figure rules on another
+   * pair, printing the accuracy and throughput of each. The full resolution templates can be saved for the windows.
+   * @param args the training images and labels, the test images and labels, and optionally a file to save to
+   * @throws IOException if any of the files cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.out.println("Usage: TemplateClassifier <train-images> <train-labels> <test-images> <test-labels> [templates-out]");
+      return;
+    }
+
+    IdxDataset training = IdxDataset.open(Paths.get(args[0]), Paths.get(args[1]));
+    IdxDataset testing = IdxDataset.open(Paths.get(args[2]), Paths.get(args[3]));
+
+    TemplateClassifier grid = train(training, GRID_RESOLUTION);
+    TemplateClassifier crop = train(training, CROP_RESOLUTION);
+    evaluate("Figure rules", new DigitClassifier(), testing);
+    evaluate("Templates " + GRID_RESOLUTION + "x" + GRID_RESOLUTION, grid, testing);
+    evaluate("Templates " + CROP_RESOLUTION + "x" + CROP_RESOLUTION, crop, testing);
+
+    if (args.length > 4) {
+      crop.save(Paths.get(args[4]));
+      System.out.println("Saved the " + CROP_RESOLUTION + "x" + CROP_RESOLUTION + " templates to " + args[4]);
+    }
+  }
+
+  /**
+   * Classifies every sample of a dataset and prints how accurate and how fast that was.
+   * @param name the name to print
+   * @param recognizer the recognizer to evaluate
+   * @param dataset the labelled samples to test on
+   */
+  private static void evaluate(String name, DigitRecognizer recognizer, IdxDataset dataset) {
+    BatchClassifier batch = new BatchClassifier(recognizer);
+    long start = System.nanoTime();
+    int[] predictions = batch.classifyBatch(dataset, 0, dataset.size());
+    long elapsed = System.nanoTime() - start;
+
+    int correct = 0;
+    for (int index = 0; index < dataset.size(); index += 1) {
+      if (predictions[index] == dataset.getLabel(index)) {
+        correct += 1;
+      }
+    }
+    System.out.println(name + ": " + (100.0 * correct / dataset.size()) + "% correct, "
+        + (dataset.size() * 1e9 / elapsed) + " samples per second");
+  }
+
+}
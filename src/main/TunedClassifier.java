@@ -0,0 +1,255 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Recognizes digits with the figure rules, then lets a set of trained coefficients have the final say. The weight of
+ * each digit is a weighted sum of the 19 figures, the 10 hand-written digit weights and a constant, so the
+ * coefficients can correct the hand-written formulas wherever the training data disagrees with them.
+ * The coefficients are fitted by PerceptronTrainer and saved to a file, so retuning no longer means editing formulas.
+ */
+public class TunedClassifier implements DigitRecognizer {
+
+  // Each digit's weight is computed from the figures, then the hand-written digit weights, then a constant 1
+  public static final int FEATURE_COUNT = DigitClassifier.FIGURE_COUNT + DigitClassifier.DIGIT_COUNT + 1;
+  private static final int FILE_MAGIC = 0x434F4546; // "COEF", the start of a saved coefficient file
+
+  private final double[] coefficients; // Digit d's coefficient of feature f is at index d * FEATURE_COUNT + f
+
+  /**
+   * Creates a TunedClassifier with the given coefficients.
+   * @param coefficients the coefficients of each digit one after another, FEATURE_COUNT for each digit
+   * @throws IllegalArgumentException if there is not a coefficient for every feature of every digit
+   */
+  public TunedClassifier(double[] coefficients) {
+    if (coefficients.length != DigitClassifier.DIGIT_COUNT * FEATURE_COUNT) {
+      throw new IllegalArgumentException("Expected " + DigitClassifier.DIGIT_COUNT * FEATURE_COUNT + " coefficients");
+    }
+    this.coefficients = coefficients.clone();
+  }
+
+  /**
+   * Returns the coefficients that reproduce the hand-written formulas exactly: each digit's weight is its own
+   * hand-written weight and nothing else. Training starts from here.
+   * @return the coefficients
+   */
+  public static double[] handWritten() {
+    double[] coefficients = new double[DigitClassifier.DIGIT_COUNT * FEATURE_COUNT];
+    for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+      coefficients[digit * FEATURE_COUNT + DigitClassifier.FIGURE_COUNT + digit] = 1.0;
+    }
+    return coefficients;
+  }
+
+  /**
+   * Returns a copy of the coefficients.
+   * @return the coefficients, laid out as the constructor takes them
+   */
+  public double[] getCoefficients() {
+    return this.coefficients.clone();
+  }
+
+  /**
+   * Runs a drawing through the figure rules and collects everything the coefficients are applied to.
+   * @param l1 the simplified drawing
+   * @param figures scratch for the figure weights, left holding them (K and E adjusted)
+   * @param weights scratch for the hand-written digit weights, left holding them
+   * @param features the array to fill, FEATURE_COUNT long
+   */
+  public static void extractFeatures(LayerOne l1, double[] figures, double[] weights, double[] features) {
+    l1.scoreFigures(figures);
+    combineFeatures(figures, weights, features);
+  }
+
+  /**
+   * Collects everything the coefficients are applied to from figure weights that were already scored.
+   * @param figures the figure weights, adjusted in place (K and E) the same way extractFeatures leaves them
+   * @param weights scratch for the hand-written digit weights, left holding them
+   * @param features the array to fill, FEATURE_COUNT long
+   */
+  private static void combineFeatures(double[] figures, double[] weights, double[] features) {
+    DigitClassifier.scoreDigits(figures, weights);
+    System.arraycopy(figures, 0, features, 0, DigitClassifier.FIGURE_COUNT);
+    System.arraycopy(weights, 0, features, DigitClassifier.FIGURE_COUNT, DigitClassifier.DIGIT_COUNT);
+    features[FEATURE_COUNT - 1] = 1.0;
+  }
+
+  /**
+   * Computes the weight of every digit from a set of features.
+   * @param coefficients the coefficients to apply
+   * @param features the features, FEATURE_COUNT of them starting at offset
+   * @param offset where the features start
+   * @param weights the array to fill, indexed by digit
+   */
+  static void score(double[] coefficients, double[] features, int offset, double[] weights) {
+    for (int digit = 0; digit < DigitClassifier.DIGIT_COUNT; digit += 1) {
+      double sum = 0.0;
+      for (int idx = 0; idx < FEATURE_COUNT; idx += 1) {
+        sum += coefficients[digit * FEATURE_COUNT + idx] * features[offset + idx];
+      }
+      weights[digit] = sum;
+    }
+  }
+
+  /**
+   * Classifies the drawing stored in the given VisionBoard on a 5x5 grid, keeping every weight so it can be displayed.
+   * @param vBoard the VisionBoard to classify
+   * @return the result of the classification
+   * @throws IllegalArgumentException if the drawing is too small to divide into a grid
+   */
+  public ClassificationResult classify(VisionBoard vBoard) {
+    return this.classify(vBoard, vBoard.generateGrid());
+  }
+
+  /**
+   * Classifies a drawing whose grid the caller already generated. Only the grid is read: the VisionBoard is taken
+   * because DigitRecognizer needs it for recognizers that work from the drawing itself, and is ignored here.
+   * @param vBoard the VisionBoard the grid was generated from, which is not read
+   * @param grid the 5x5 grid generated from vBoard, which is left unchanged
+   * @return the result of the classification
+   */
+  public ClassificationResult classify(VisionBoard vBoard, LayerOne grid) {
+    double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+    double[] weights = new double[DigitClassifier.DIGIT_COUNT];
+    double[] features = new double[FEATURE_COUNT];
+
+    extractFeatures(grid, figures, weights, features);
+    score(this.coefficients, features, 0, weights);
+    return new ClassificationResult(figures, weights);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to divide into a grid
+   */
+  public void classify(PixelSource source, Scratch scratch, ClassificationResult result) {
+    double[] features = scratch.features(FEATURE_COUNT);
+    LayerOne l1 = scratch.grid(LayerOne.DEFAULT_SIZE);
+    scratch.vBoard.load(source);
+    scratch.vBoard.generateGrid(l1);
+    extractFeatures(l1, scratch.figures, scratch.weights, features);
+    score(this.coefficients, features, 0, scratch.weights);
+    result.set(scratch.figures, scratch.weights);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @return the digit with the highest tuned weight
+   * @throws IllegalArgumentException if there is no drawing, or it is too small to divide into a grid
+   */
+  public int predict(PixelSource source, Scratch scratch) {
+    double[] features = scratch.features(FEATURE_COUNT);
+    LayerOne l1 = scratch.grid(LayerOne.DEFAULT_SIZE);
+    scratch.vBoard.load(source);
+    scratch.vBoard.generateGrid(l1);
+    extractFeatures(l1, scratch.figures, scratch.weights, features);
+    score(this.coefficients, features, 0, scratch.weights);
+    return ClassificationResult.highestWeight(scratch.weights);
+  }
+
+  /**
+   * Predicts the digit from figure weights that were already computed, for example by a LiveGrid, combining them
+   * with the hand-written digit weights and the tuned coefficients in the given Scratch.
+   * @param figures the weights of figures A through S over a 5x5 grid, which are left unchanged
+   * @param scratch the working memory to use, which must not be shared between threads
+   * @return the digit with the highest tuned weight
+   */
+  public int predictFigures(double[] figures, Scratch scratch) {
+    double[] features = scratch.features(FEATURE_COUNT);
+    System.arraycopy(figures, 0, scratch.figures, 0, DigitClassifier.FIGURE_COUNT); // K and E are adjusted in place
+    combineFeatures(scratch.figures, scratch.weights, features);
+    score(this.coefficients, features, 0, scratch.weights);
+    return ClassificationResult.highestWeight(scratch.weights);
+  }
+
+  /**
+   * Saves these coefficients so the runtime can load them.
+   * @param file the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(FEATURE_COUNT);
+      for (double value : this.coefficients) {
+        out.writeDouble(value);
+      }
+    }
+  }
+
+  /**
+   * Loads coefficients saved by save.
+   * @param file the file to read
+   * @return the TunedClassifier using those coefficients
+   * @throws IOException if the file cannot be read or does not hold coefficients for this set of features
+   */
+  public static TunedClassifier load(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FILE_MAGIC) {
+        throw new IOException("Not a coefficient file");
+      }
+      if (in.readInt() != FEATURE_COUNT) {
+        throw new IOException("The coefficients were trained on a different set of features");
+      }
+      double[] coefficients = new double[DigitClassifier.DIGIT_COUNT * FEATURE_COUNT];
+      for (int idx = 0; idx < coefficients.length; idx += 1) {
+        coefficients[idx] = in.readDouble();
+      }
+      return new TunedClassifier(coefficients);
+    }
+  }
+
+  /**
+   * Fits the coefficients on one pair of IDX files, then compares them to the hand-written formulas on another pair,
+   * printing the accuracy of each. The coefficients can be saved for the windows.
+   * @param args the training images and labels, the test images and labels, and optionally a file to save to
+   * @throws IOException if any of the files cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.out.println("Usage: TunedClassifier <train-images> <train-labels> <test-images> <test-labels> [coefficients-out]");
+      return;
+    }
+
+    IdxDataset training = IdxDataset.open(Paths.get(args[0]), Paths.get(args[1]));
+    IdxDataset testing = IdxDataset.open(Paths.get(args[2]), Paths.get(args[3]));
+
+    long start = System.nanoTime();
+    PerceptronTrainer trainer = new PerceptronTrainer(training);
+    TunedClassifier tuned = trainer.train(handWritten());
+    System.out.println("Trained on " + trainer.size() + " samples in " + (System.nanoTime() - start) / 1e9 + " seconds");
+
+    System.out.println("Hand-written: " + accuracy(new DigitClassifier(), testing) + "% correct");
+    System.out.println("Tuned: " + accuracy(tuned, testing) + "% correct");
+
+    if (args.length > 4) {
+      tuned.save(Paths.get(args[4]));
+      System.out.println("Saved the coefficients to " + args[4]);
+    }
+  }
+
+  /**
+   * Classifies every sample of a dataset and measures how many were correct.
+   * @param recognizer the recognizer to evaluate
+   * @param dataset the labelled samples to test on
+   * @return the percentage of samples predicted correctly
+   */
+  private static double accuracy(DigitRecognizer recognizer, IdxDataset dataset) {
+    int[] predictions = new BatchClassifier(recognizer).classifyBatch(dataset, 0, dataset.size());
+    int correct = 0;
+    for (int index = 0; index < dataset.size(); index += 1) {
+      if (predictions[index] == dataset.getLabel(index)) {
+        correct += 1;
+      }
+    }
+    return 100.0 * correct / dataset.size();
+  }
+
+}
@@ -2,148 +2,359 @@ package main;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Stores and manipulates the perceived data from the base image. Effectively layer zero of processing.
  */
 public class VisionBoard implements OptionalVisionBoard {
 
-  private ArrayList<ArrayList<Boolean>> oldBoard; // The large image that is taken in (the distal stimulus)
-  private ArrayList<ArrayList<Boolean>> board; // The relevant part of that image (the smallest square region that contains all active pixels)
+  // The weight an active cell adds to its section, indexed by how many active neighbors it has.
+  // In twentieths, these are .05, .3, .7, .8, .9, 1, 1.1, 1.15 and 1.3
+  private static final int[] NEIGHBOR_WEIGHTS = {1, 6, 14, 16, 18, 20, 22, 23, 26};
+  private static final double WEIGHT_UNITS = 20.0;
+
+  private CropRect crop; // Where the relevant part sits in the large image (the distal stimulus) that was taken in
+  private int sourceSize; // The width (and height) of that large image
+  // The relevant part of that image (the smallest square region that contains all active pixels).
+  // Rows are bit packed the same way as the DrawingBoard: bit (col % 64) of word (row * wordsPerRow + col / 64)
+  private long[] board;
+  private int boardSize; // The width (and height) of the relevant part
+  private int wordsPerRow;
+  private int[] weightTable; // Summed-area table of weighted activations, built the first time a grid is generated
+  private boolean weightsReady; // Whether the weightTable matches the current board
+  private final long[] counts = new long[4]; // Scratch bit planes used when counting neighbors
+  private int[] coverage; // Scratch coverage of one row when resampling
+  private int[] sections; // Scratch layout of the grid sections, see layoutSections
 
   /**
    * Creates a VisionBoard object.
-   * @param oldBoard the distal stimulus board taken in
+   * @param oldBoard the distal stimulus image taken in, either a drawing or a dataset sample
+   * @throws IllegalArgumentException if there is no drawing in the image
    */
-  public VisionBoard(ArrayList<ArrayList<Boolean>> oldBoard) {
-
-    this.oldBoard = oldBoard;
-
-    // Find the last activated pixel at each extremity.
-    int left = this.findEdge("left");
-    int right = this.findEdge("right");
-    int top = this.findEdge("top");
-    int bottom = this.findEdge("bottom");
-
-    int width = (right - left) + 1;
-    int height = (bottom - top) + 1;
+  public VisionBoard(PixelSource oldBoard) {
+    this.load(oldBoard);
+  }
 
-    // Here we make the bounds square, and prevent them from going out of bounds of the image
-    if (height > width) {
-      left -= (height - width) / 2;
-      right += (height - width) / 2 + (height - width) % 2;
-      width = right - left + 1;
-    }
-    else if (width > height) {
-      top -= (width - height) / 2;
-      bottom += (width - height) / 2 + (width - height) % 2;
-      height = bottom - top + 1;
-    }
+  /**
+   * Creates a VisionBoard that holds nothing yet. It must be given an image with load before it is used.
+   * This is meant for a scratch board that is reused across many images.
+   */
+  public VisionBoard() {
+    // The arrays are allocated by the first load
+  }
 
-    if (bottom >= PaintPanel.SCALE) {
-      top -= bottom - PaintPanel.SCALE;
-      bottom = PaintPanel.SCALE - 1;
-    }
-    else if (top < 0) {
-      bottom -= top;
-      top = 0;
+  /**
+   * Takes in a new image, replacing whatever this VisionBoard held before. The arrays of the previous image are
+   * reused whenever they are large enough, so a scratch board stops allocating once it has seen its largest image.
+   * @param oldBoard the distal stimulus image taken in, either a drawing or a dataset sample
+   * @throws IllegalArgumentException if there is no drawing in the image
+   */
+  public void load(PixelSource oldBoard) {
+    StageEvents.Crop event = new StageEvents.Crop();
+    event.begin();
+
+    // The square region around the drawing, already kept inside the bounds of the image
+    this.crop = oldBoard.getCrop();
+    this.sourceSize = oldBoard.size();
+
+    // Create a new square matrix to hold only the relevant information, copying each row a word at a time.
+    // This takes one more row and column than the square itself, which the 5x5 cell layout has always been based on.
+    // When the square reaches the right or bottom edge, that extra row or column is past the image and left empty
+    this.boardSize = this.crop.getSize() + 1;
+    this.wordsPerRow = (this.boardSize + 63) >>> 6;
+    if (this.board == null || this.board.length < this.boardSize * this.wordsPerRow) {
+      this.board = new long[this.boardSize * this.wordsPerRow];
     }
 
-    if (right >= PaintPanel.SCALE) {
-      left -= right - PaintPanel.SCALE;
-      right = PaintPanel.SCALE - 1;
+    for (int row = 0; row < this.boardSize; row += 1) {
+      this.copyRow(oldBoard, row);
     }
-    else if (left < 0) {
-      right -= left;
-      left = 0;
-    }
-
-    // Create a new square matrix to hold only the relevant information
-    ArrayList<ArrayList<Boolean>> newBoard = new ArrayList<ArrayList<Boolean>>();
+    this.weightsReady = false;
 
-    for (int col = 0; col <= width; col += 1) {
-      ArrayList<Boolean> nextCol = new ArrayList<>();
-      for (int row = 0; row <= height; row += 1) {
-        nextCol.add(this.oldBoard.get(left + col).get(top + row));
+    if (event.shouldCommit()) {
+      int active = 0;
+      for (int idx = 0; idx < this.boardSize * this.wordsPerRow; idx += 1) {
+        active += Long.bitCount(this.board[idx]);
       }
-      newBoard.add(nextCol);
+      event.imageWidth = this.sourceSize;
+      event.cropWidth = this.crop.getSize();
+      event.activeCount = active; // Every active pixel is inside the crop
+      event.commit();
     }
 
-    this.board = newBoard;
+  }
 
+  /**
+   * Returns where the relevant part of the image was taken from.
+   * @return the CropRect of the image taken in
+   */
+  public CropRect getCrop() {
+    return this.crop;
   }
 
   /**
    * Generates a LayerOne object with a 5x5 grid (the proximal stimulus).
-   * @return
+   * @return the new LayerOne
+   * @throws IllegalArgumentException if the drawing is too small to be divided into a 5x5 grid
    */
   public LayerOne generateGrid() {
-    int step = this.board.size() / 5; // Allows us to iterate through the board one fifth at a time
+    return this.generateGrid(LayerOne.DEFAULT_SIZE);
+  }
+
+  /**
+   * Generates a LayerOne object with a grid of the given size (the proximal stimulus).
+   * @param size the width (and height) of the grid
+   * @return the new LayerOne
+   * @throws IllegalArgumentException if the drawing is too small to be divided into a grid of that size
+   */
+  public LayerOne generateGrid(int size) {
+    LayerOne l1 = new LayerOne(size);
+    this.generateGrid(l1);
+    return l1;
+  }
 
-    ArrayList<ArrayList<Double>> l1 = new ArrayList<>(); // The 5x5 matrix to be used
+  /**
+   * Fills an existing LayerOne with its grid (the proximal stimulus), at whatever size that LayerOne is,
+   * so that one LayerOne can be reused for many drawings without allocating.
+   * @param l1 the LayerOne to fill
+   * @throws IllegalArgumentException if the drawing is too small to be divided into a grid of that size
+   */
+  public void generateGrid(LayerOne l1) {
+    StageEvents.Grid event = new StageEvents.Grid();
+    event.begin();
+    int size = l1.getSize();
+    if (this.boardSize < size) {
+      throw new IllegalArgumentException("The drawing is too small to divide into a grid");
+    }
+
+    double[] grid = l1.getGrid(); // The matrix to be filled, cell (col, row) at index col * size + row
+    int[] sections = this.layoutSections(size);
+    for (int cell = 0; cell < size * size; cell += 1) {
+      grid[cell] = this.averageSection(sections[cell * 3], sections[cell * 3 + 1], sections[cell * 3 + 2]);
+    }
+
+    if (event.shouldCommit()) {
+      event.cropWidth = this.crop.getSize();
+      event.gridSize = size;
+      event.commit();
+    }
+  }
 
-    // This loop generates relevant information about the square board and simplifies it into a 5x5 board by summarizing/averaging sections 
+  /**
+   * Works out which square of the relevant part of the image each cell of a grid summarizes. The squares depend only
+   * on the size of the relevant part and of the grid, so they stay the same for as long as the crop does.
+   * @param size the width (and height) of the grid
+   * @return the left, top and width of the square of each cell, three entries per cell in the order of the grid.
+   * The array is reused by the next call
+   */
+  int[] layoutSections(int size) {
+    if (this.sections == null || this.sections.length < size * size * 3) {
+      this.sections = new int[size * size * 3];
+    }
+    int step = this.boardSize / size; // Allows us to iterate through the board one cell at a time
+
+    // This loop lays out the sections that the board is simplified into. Sections are one cell wider while there is
+    // remainder left to spread, and each of those shifts the ones after it along
     int remCount = 0;
-    for (int col = 0; col < this.board.size(); col += step) {
-      ArrayList<Double> nextCol = new ArrayList<Double>();
-      int rem = this.board.size() % 5;
+    int cell = 0;
+    for (int col = 0; col < this.boardSize; col += step) {
+      int rem = this.boardSize % size;
       col -= remCount;
       remCount = 0;
-      for (int row = 0; row < this.board.size(); row += step) {
+      for (int row = 0; row < this.boardSize; row += step) {
+        this.sections[cell * 3] = col;
+        this.sections[cell * 3 + 1] = row;
         if (rem > 0) {
-          nextCol.add(this.averageSection(col, row, step + 1));
+          this.sections[cell * 3 + 2] = step + 1;
           rem -= 1;
           col += 1;
           row += 1;
           remCount += 1;
         }
         else {
-          nextCol.add(this.averageSection(col, row, step));
+          this.sections[cell * 3 + 2] = step;
         }
+        cell += 1;
       }
-      l1.add(nextCol);
     }
-    return new LayerOne(l1);
+    return this.sections;
   }
 
   /**
-   * Counts the activate neighbors of a given cell. This is relevant information when simplifying the image,
-   * so cells can consider the activation of those that surround them, rather than solely the space they occupy.
-   * Indirectly, this allows lines to become more cohesive, since a line would typically span more than one fifth
-   * of an image, so we can raise the activation of both cells to make it more clear that a line is present.
-   * @param col the column to check
-   * @param row the row to check
-   * @return the number of active neighbors, adjacent and diagonal
+   * Stretches or shrinks the relevant part of the image onto a square grid of any resolution. Each value is the
+   * fraction of its cell's area that is active, from 0 to 1, so the grid is a faithful picture of the drawing at that
+   * resolution. Unlike generateGrid, neighbors play no part.
+   * Working in units of 1 / (boardSize * resolution) of the image keeps every boundary on a whole number, so a pixel
+   * that straddles two cells is split between them exactly.
+   * @param out the array to fill, cell (col, row) at index row * resolution + col
+   * @param resolution the width (and height) of the grid
    */
-  private int countActiveNeighbors(int col, int row) {
-    int count = 0;
-    if (col != 0 && this.board.get(col - 1).get(row)) {
-      count += 1;
+  public void resample(double[] out, int resolution) {
+    if (this.coverage == null || this.coverage.length < resolution) {
+      this.coverage = new int[resolution];
     }
-    if (col != this.board.size() - 1 && this.board.get(col + 1).get(row)) {
-      count += 1;
+    Arrays.fill(out, 0, resolution * resolution, 0.0);
+
+    for (int row = 0; row < this.boardSize; row += 1) {
+
+      // First find how much of each column of cells the active pixels of this row cover
+      Arrays.fill(this.coverage, 0, resolution, 0);
+      boolean active = false;
+      for (int word = 0; word < this.wordsPerRow; word += 1) {
+        long bits = this.board[row * this.wordsPerRow + word];
+        while (bits != 0) {
+          int col = (word << 6) + Long.numberOfTrailingZeros(bits);
+          for (int cell = col * resolution / this.boardSize; cell <= ((col + 1) * resolution - 1) / this.boardSize; cell += 1) {
+            this.coverage[cell] += this.overlap(col, cell, resolution);
+          }
+          active = true;
+          bits &= bits - 1; // Clear the lowest set bit
+        }
+      }
+
+      // Then spread that coverage down into each row of cells the pixel row overlaps
+      if (active) {
+        for (int cell = row * resolution / this.boardSize; cell <= ((row + 1) * resolution - 1) / this.boardSize; cell += 1) {
+          int height = this.overlap(row, cell, resolution);
+          for (int col = 0; col < resolution; col += 1) {
+            out[cell * resolution + col] += height * this.coverage[col];
+          }
+        }
+      }
     }
-    if (row != 0 && this.board.get(col).get(row - 1)) {
-      count += 1;
+
+    double area = (double) this.boardSize * this.boardSize; // The area of one cell, in the same units
+    for (int idx = 0; idx < resolution * resolution; idx += 1) {
+      out[idx] /= area;
     }
-    if (row != this.board.size() - 1 && this.board.get(col).get(row + 1)) {
-      count += 1;
+  }
+
+  /**
+   * Measures how much of one cell of a resampled grid a single pixel covers along one axis.
+   * @param pixel the pixel's column (or row)
+   * @param cell the cell's column (or row)
+   * @param resolution the width of the resampled grid
+   * @return the length of the overlap, in units of 1 / (boardSize * resolution) of the image
+   */
+  private int overlap(int pixel, int cell, int resolution) {
+    return Math.min((cell + 1) * this.boardSize, (pixel + 1) * resolution) - Math.max(cell * this.boardSize, pixel * resolution);
+  }
+
+  /**
+   * Returns whether the given pixel of the relevant part of the image is active.
+   * @param col the column to check
+   * @param row the row to check
+   * @return whether that pixel is active
+   */
+  private boolean isActive(int col, int row) {
+    return (this.board[row * this.wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /**
+   * Returns one packed word of the relevant part of the image, or zero for a row or word outside of it.
+   * @param row the row to read
+   * @param word which word of the row to read
+   * @return the packed pixels
+   */
+  private long rowWord(int row, int word) {
+    if (row < 0 || row >= this.boardSize || word < 0 || word >= this.wordsPerRow) {
+      return 0L;
     }
-    
-    if (col != 0 && row != 0 && this.board.get(col - 1).get(row-1)) {
-      count += 1;
+    return this.board[row * this.wordsPerRow + word];
+  }
+
+  /**
+   * Counts the active neighbors of all 64 cells in one word of a row at once. This is relevant information when
+   * simplifying the image, so cells can consider the activation of those that surround them, rather than solely the
+   * space they occupy. Indirectly, this allows lines to become more cohesive, since a line would typically span more
+   * than one fifth of an image, so we can raise the activation of both cells to make it more clear that a line is present.
+   * Each of the eight neighbor directions is a shifted copy of a row, and the copies are added together bit by bit,
+   * so bit i of counts[k] holds bit k of the neighbor count (0 to 8) of cell (word * 64 + i, row).
+   * @param row the row to check
+   * @param word which word of the row to check
+   * @param counts the four bit planes of the counts to fill
+   */
+  private void countActiveNeighbors(int row, int word, long[] counts) {
+    counts[0] = 0L;
+    counts[1] = 0L;
+    counts[2] = 0L;
+    counts[3] = 0L;
+
+    for (int nearRow = row - 1; nearRow <= row + 1; nearRow += 1) {
+      long here = this.rowWord(nearRow, word);
+      long west = (here << 1) | (this.rowWord(nearRow, word - 1) >>> 63); // Bit i is the cell to the left of i
+      long east = (here >>> 1) | (this.rowWord(nearRow, word + 1) << 63); // Bit i is the cell to the right of i
+      addPlane(counts, west);
+      addPlane(counts, east);
+      if (nearRow != row) {
+        addPlane(counts, here);
+      }
     }
-    if (col != 0 && row != this.board.size() - 1 && this.board.get(col - 1).get(row+1)) {
-      count += 1;
+  }
+
+  /**
+   * Adds one to every count whose bit is set in the given mask, carrying through the bit planes.
+   * @param counts the four bit planes of the counts
+   * @param mask the cells to add one to
+   */
+  private static void addPlane(long[] counts, long mask) {
+    long carry = mask;
+    for (int plane = 0; plane < 4 && carry != 0; plane += 1) {
+      long sum = counts[plane] ^ carry;
+      carry = counts[plane] & carry;
+      counts[plane] = sum;
     }
-    if (col != this.board.size() - 1 && row != 0 && this.board.get(col + 1).get(row-1)) {
-      count += 1;
+  }
+
+  /**
+   * Builds the summed-area table of weighted activations for the relevant part of the image. Every active cell
+   * is weighted by how many active neighbors it has, and entry (col, row) of the table holds the total weight of
+   * every cell above and to the left of it. Any square's total weight can then be read from four entries.
+   * Neighbors are counted a whole word of cells at a time.
+   * The weights are kept in whole twentieths so that the table is exact, and an empty section always sums to zero.
+   */
+  private void buildWeightTable() {
+    int stride = this.boardSize + 1; // The table has a leading row and column of zeroes
+    if (this.weightTable == null || this.weightTable.length < stride * stride) {
+      this.weightTable = new int[stride * stride];
     }
-    if (col != this.board.size() - 1 && row != this.board.size() - 1 && this.board.get(col + 1).get(row+1)) {
-      count += 1;
+    for (int idx = 0; idx < stride; idx += 1) {
+      this.weightTable[idx] = 0;
+      this.weightTable[idx * stride] = 0;
     }
-    return count;
+
+    long[] counts = this.counts;
+    for (int row = 0; row < this.boardSize; row += 1) {
+      int rowTotal = 0;
+      for (int word = 0; word < this.wordsPerRow; word += 1) {
+        long active = this.board[row * this.wordsPerRow + word];
+        if (active != 0) {
+          this.countActiveNeighbors(row, word, counts);
+        }
+
+        int end = Math.min(64, this.boardSize - (word << 6));
+        for (int bit = 0; bit < end; bit += 1) {
+          if ((active & (1L << bit)) != 0) {
+            rowTotal += neighborWeight(counts, bit);
+          }
+          int col = (word << 6) + bit;
+          this.weightTable[(row + 1) * stride + col + 1] = this.weightTable[row * stride + col + 1] + rowTotal;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the weight of one active cell from the bit planes of its word's neighbor counts.
+   * @param counts the four bit planes filled by countActiveNeighbors
+   * @param bit the cell's bit in the word
+   * @return the weight of the cell in twentieths
+   */
+  private static int neighborWeight(long[] counts, int bit) {
+    int neighbors = (int) (((counts[0] >>> bit) & 1) | ((counts[1] >>> bit) & 1) << 1
+        | ((counts[2] >>> bit) & 1) << 2 | ((counts[3] >>> bit) & 1) << 3);
+    return NEIGHBOR_WEIGHTS[neighbors];
   }
 
   /**
@@ -156,129 +367,112 @@ public class VisionBoard implements OptionalVisionBoard {
    * This would be notably more effective using an ML algorithm, but I wanted to try doing it by hand.
    */
   private double averageSection(int left, int top, int dim) {
+    return sectionAverage(this.sectionWeight(left, top, dim), dim);
+  }
 
-    double total = 0.0;
-
-    for (int col = left; col < left + dim; col += 1) {
-      for (int row = top; row < top + dim; row += 1) {
-        if (this.board.get(col).get(row)) {
-          int neighbors = this.countActiveNeighbors(col, row);
-          if (neighbors == 0) {
-            total += .05;
-          }
-          else if (neighbors == 1) {
-            total += .3;
-          }
-          else if (neighbors == 2) {
-            total += .7;
-          }
-          else if (neighbors == 3) {
-            total += .8;
-          }
-          else if (neighbors == 4) {
-            total += .9;
-          }
-          else if (neighbors == 5) {
-            total += 1;
-          }
-          else if (neighbors == 6) {
-            total += 1.1;
-          }
-          else if (neighbors == 7) {
-            total += 1.15;
-          }
-          else if (neighbors == 8) {
-            total += 1.3;
-          }
-        }
-      }
+  /**
+   * Totals the weighted activations of a specified square of cells, in twentieths.
+   * @param left the left bound (inclusive)
+   * @param top the top bound (inclusive)
+   * @param dim the amount of cells in both directions to consider
+   * @return the total weight of that square
+   */
+  int sectionWeight(int left, int top, int dim) {
+    if (!this.weightsReady) {
+      this.buildWeightTable();
+      this.weightsReady = true;
     }
 
-    return total / (dim * dim * 1.44);
+    int stride = this.boardSize + 1;
+    return this.weightTable[(top + dim) * stride + left + dim] - this.weightTable[top * stride + left + dim]
+        - this.weightTable[(top + dim) * stride + left] + this.weightTable[top * stride + left];
+  }
 
+  /**
+   * Turns the total weight of a square of cells into the value of its grid cell.
+   * @param total the total weight of the square, in twentieths
+   * @param dim the width (and height) of the square
+   * @return the weighted average value across that square
+   */
+  static double sectionAverage(int total, int dim) {
+    return (total / WEIGHT_UNITS) / (dim * dim * 1.44);
   }
 
   /**
-   * Finds the last active pixel in a certain direction of the board.
-   * @param edge the edge to find the location of
-   * @return the index at which that edge can be found
+   * Finds the weight each cell of a run of one row adds to any section it is in, the same as the summed-area table
+   * counts it. Neighbors are counted a whole word of cells at a time.
+   * @param row the row to read
+   * @param fromCol the first column of the run
+   * @param toCol the last column of the run (inclusive)
+   * @param weights the array to fill, the weight of each column at index (col - fromCol) in twentieths, 0 if inactive
+   * @param offset where in the array the run starts
    */
-  public int findEdge(String edge) {
-    if (edge.equals("left")) {
-      return findSideBound(0, 0, this.oldBoard.size(), 1);
-    }
-    else if (edge.equals("right")) {
-      return findSideBound(this.oldBoard.size() - 1, 0, this.oldBoard.size(), -1);
-    }
-    else if (edge.equals("top")) {
-      return findCFBound(0, 0, this.oldBoard.size(), 1);
-    }
-    else if (edge.equals("bottom")) {
-      return findCFBound(this.oldBoard.size() - 1, 0, this.oldBoard.size(), -1);
-    }
-    else {
-      throw new IllegalArgumentException("Invalid edge name");
+  void cellWeights(int row, int fromCol, int toCol, int[] weights, int offset) {
+    long[] counts = this.counts;
+    for (int word = fromCol >>> 6; word <= toCol >>> 6; word += 1) {
+      long active = this.board[row * this.wordsPerRow + word];
+      if (active != 0) {
+        this.countActiveNeighbors(row, word, counts);
+      }
+      int first = Math.max(fromCol, word << 6);
+      int last = Math.min(toCol, (word << 6) + 63);
+      for (int col = first; col <= last; col += 1) {
+        int bit = col & 63;
+        weights[offset + col - fromCol] = (active & (1L << bit)) != 0 ? neighborWeight(counts, bit) : 0;
+      }
     }
   }
 
   /**
-   * Finds the side bound of the board given where to start, stop, and how to move.
-   * @param start the first index to check
-   * @param lower the leftmost index that may be searched
-   * @param upper the rightmost index that may be searched
-   * @param stepDirection either -1 or 1, the direction in which the checked position will change
-   * @return the index at which the bound is found.
+   * Copies some rows of the relevant part of the image again from the image they were taken from, for an image that
+   * changed without its crop moving. Nothing outside those rows is read again.
+   * @param oldBoard the image this VisionBoard was loaded from, whose crop must not have changed since
+   * @param firstRow the first row of the relevant part to copy
+   * @param lastRow the last row of the relevant part to copy (inclusive)
    */
-  private int findSideBound(int start, int lower, int upper, int stepDirection) {
-    int col = start;
-    while (col >= lower && col < upper) {
-      int row = start;
-      while (row >= lower && row < upper) {
-        if (this.oldBoard.get(col).get(row)) {
-          return col;
-        }
-        row += 1 * stepDirection;
-      }
-      col += 1 * stepDirection;
+  void reloadRows(PixelSource oldBoard, int firstRow, int lastRow) {
+    for (int row = Math.max(firstRow, 0); row <= Math.min(lastRow, this.boardSize - 1); row += 1) {
+      this.copyRow(oldBoard, row);
     }
-    throw new IllegalArgumentException("There is no drawing");
+    this.weightsReady = false;
   }
 
   /**
-   * Finds the ceiling or the floor bound of the board given where to start, stop, and how to move.
-   * @param start the first index to check
-   * @param lower the uppermost index that may be searched
-   * @param upper the lowermost index that may be searched
-   * @param stepDirection either -1 or 1, the direction in which the checked position will change
-   * @return the index at which the bound is found.
+   * Copies one row of the relevant part of the image from the image it is taken from, a word at a time. Any part
+   * of the row that lies past the right or bottom edge of the image is left empty.
+   * @param oldBoard the image to copy from
+   * @param row the row of the relevant part to copy
    */
-  private int findCFBound(int start, int lower, int upper, int stepDirection) {
-
-    int row = start;
-    while (row >= lower && row < upper) {
-      int col = start;
-      while (col >= lower && col < upper) {
-        if (this.oldBoard.get(col).get(row)) {
-          return row;
-        }
-        col += 1 * stepDirection;
-      }
-      row += 1 * stepDirection;
+  private void copyRow(PixelSource oldBoard, int row) {
+    int left = this.crop.getLeft();
+    int sourceRow = this.crop.getTop() + row;
+    for (int word = 0; word < this.wordsPerRow; word += 1) {
+      int col = left + (word << 6);
+      int len = Math.min(Math.min(64, this.boardSize - (word << 6)), this.sourceSize - col);
+      boolean inside = sourceRow < this.sourceSize && len > 0;
+      this.board[row * this.wordsPerRow + word] = inside ? oldBoard.getBits(col, sourceRow, len) : 0L;
     }
-    throw new IllegalArgumentException("There is no drawing");
+  }
+
+  /**
+   * Returns the width (and height) of the relevant part of the image, which is one more than the crop.
+   * @return the amount of cells along each side of the relevant part
+   */
+  int getBoardSize() {
+    return this.boardSize;
   }
 
   /**
    * Draws this vision board using the given Graphics object.
-   * This renders the 5x5 drawing seen in the small window
+   * This renders the cropped drawing at the same scale as the drawing window shows the image it came from
    * @param g the Graphics object used to draw.
    */
   public void drawComponent(Graphics g) {
-    int squareSize = PaintWindow.WIDTH / PaintPanel.SCALE;
-    for (int col = 0; col < this.board.size(); col += 1) {
+    int squareSize = Math.max(PaintWindow.WIDTH / this.sourceSize, 1);
+    for (int col = 0; col < this.boardSize; col += 1) {
 
-      for (int row = 0; row < this.board.size(); row += 1) {
-        if (this.board.get(col).get(row)) {
+      for (int row = 0; row < this.boardSize; row += 1) {
+        if (this.isActive(col, row)) {
           g.setColor(Color.BLACK);
         }
         else {
@@ -11,11 +11,12 @@ public class VisionWindow {
   
   /**
    * Creates a VisionWindow.
-   * @param vs the OptionalVisionBoard to be used
+   * @param classifier the recognizer used to predict the digit
+   * @param sink where to send each classification
    */
-  public VisionWindow(OptionalVisionBoard vs) {
+  public VisionWindow(DigitRecognizer classifier, ResultSink sink) {
     this.window = new JFrame("Vision"); // Window title
-    this.visionPanel = new VisionPanel(vs); // Creates a new panel
+    this.visionPanel = new VisionPanel(classifier, sink); // Creates a new panel
     this.window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Closes when topleft X is pressed
     this.window.setResizable(false); // Prevents resizing.
     this.window.setSize(100, 100); // This is the relevant window size
@@ -24,10 +25,17 @@ public class VisionWindow {
   }
   
   /**
-   * Updates the VisionBoard stored by the VisionPanel.
-   * @param vs the new VisionBoard to be used
+   * Classifies the given drawing in the background and shows it once it is done.
+   * @param vBoard the drawing to classify, which the caller must not use afterwards other than to classify it again
    */
-  public void updateBoard(OptionalVisionBoard vs) {
-    this.visionPanel.updateBoard(vs);
+  public void classify(VisionBoard vBoard) {
+    this.visionPanel.classify(vBoard);
+  }
+
+  /**
+   * Clears whatever the VisionPanel is showing.
+   */
+  public void clear() {
+    this.visionPanel.clear();
   }
 }
@@ -0,0 +1,210 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Checks that every drawing BoardCodec writes reads back exactly: the same cells, label and crop, with the buffer
+ * left just past the drawing, whichever way the pixels were stored and whatever the byte order of the buffers it was
+ * written to and read from. Drawings that are cut short, that have unknown flags or a crop outside the image, that
+ * claim more pixels than the buffer holds or are wider than the reader accepts, and buffers that are not drawings at
+ * all must be refused with an IOException.
+ */
+public class BoardCodecCheck {
+
+  private static final int[] SIZES = {1, 2, 7, 28, 50, 63, 64, 65, 100, 129}; // Around every word boundary
+  private static final int TRIALS = 60; // Drawings per size
+  private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+  /**
+   * Runs the check.
+   * @param args unused
+   * @throws IOException if a drawing that was written cannot be read back
+   */
+  public static void main(String[] args) throws IOException {
+    Random random = new Random(6);
+    int checks = 0;
+    int runLength = 0;
+    for (int size : SIZES) {
+      for (int trial = 0; trial < TRIALS; trial += 1) {
+        DrawingBoard board = draw(size, trial % 4, random);
+        int label = trial % 11 == 10 ? BoardCodec.NO_LABEL : trial % 10;
+        boolean withCrop = trial % 2 == 0;
+        for (ByteOrder writeOrder : ORDERS) {
+          for (ByteOrder readOrder : ORDERS) {
+            runLength += roundTrip(board, label, withCrop, writeOrder, readOrder, trial % 3 == 0) ? 1 : 0;
+            checks += 1;
+          }
+        }
+        refuseBroken(board);
+      }
+    }
+    Checks.require(runLength > 0 && runLength < checks, "Only one way of storing pixels was ever used");
+    System.out.println("BoardCodecCheck: " + checks + " drawings read back exactly, " + runLength
+        + " of them run length encoded");
+  }
+
+  /**
+   * Fills a board with one of four kinds of drawing, so both ways of storing the pixels are used.
+   * @param size the width (and height) of the board
+   * @param kind 0 for empty, 1 for sparse, 2 for noise or 3 for full
+   * @param random the source of the cells
+   * @return the board
+   */
+  private static DrawingBoard draw(int size, int kind, Random random) {
+    DrawingBoard board = new DrawingBoard(size);
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 1) {
+        if (kind == 3 || kind != 0 && random.nextInt(kind == 1 ? 40 : 2) == 0) {
+          board.setVal(col, row, true);
+        }
+      }
+    }
+    return board;
+  }
+
+  /**
+   * Writes a board between two marker bytes, reads it back into a board that held something else, and compares.
+   * @param board the board to write
+   * @param label the label to store, or NO_LABEL
+   * @param withCrop whether to store the crop
+   * @param writeOrder the byte order of the buffer while writing
+   * @param readOrder the byte order of the buffer while reading
+   * @param reuseDirty whether the board read into already holds a drawing
+   * @return whether the pixels were run length encoded
+   * @throws IOException if the drawing cannot be read back
+   */
+  private static boolean roundTrip(DrawingBoard board, int label, boolean withCrop, ByteOrder writeOrder,
+      ByteOrder readOrder, boolean reuseDirty) throws IOException {
+    int size = board.size();
+    ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.maxEncodedSize(size) + 2).order(writeOrder);
+    buffer.put((byte) 9);
+    BoardCodec.write(board, label, withCrop, buffer);
+    Checks.require(buffer.order() == writeOrder, "Writing changed the byte order of the buffer");
+    int end = buffer.position();
+    buffer.put((byte) 7);
+    buffer.flip();
+    buffer.order(readOrder);
+    buffer.get();
+
+    DrawingBoard copy = new DrawingBoard(size);
+    if (reuseDirty) {
+      copy.setVal(0, 0, true);
+    }
+    BoardCodec.Header header = BoardCodec.read(buffer, copy);
+    Checks.require(buffer.order() == readOrder, "Reading changed the byte order of the buffer");
+    Checks.require(buffer.position() == end && buffer.get() == 7, "Reading stopped in the wrong place");
+    Checks.require(header.getSize() == size && header.getLabel() == label, "The header was not read back");
+    Checks.require(copy.getActiveCount() == board.getActiveCount(), "The active count was not read back");
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 1) {
+        Checks.require(copy.getVal(col, row) == board.getVal(col, row), "Cell (" + col + ", " + row + ") of a "
+            + size + "x" + size + " drawing was not read back");
+      }
+    }
+
+    if (!board.isEmpty()) {
+      Checks.require(sameCrop(copy.getCrop(), board.getCrop()), "The bounds were not rebuilt");
+      Checks.require(!withCrop || header.getCrop() != null && sameCrop(header.getCrop(), board.getCrop()),
+          "The stored crop was not read back");
+    }
+    return header.isRunLength();
+  }
+
+  /**
+   * Makes sure a drawing missing its last byte, one with a flag this version does not know, one whose crop does not
+   * fit inside the image, headers claiming far more pixels than follow them, and a buffer that is not a drawing, are
+   * all refused.
+   * @param board the board to write
+   */
+  private static void refuseBroken(DrawingBoard board) {
+    ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.maxEncodedSize(board.size()));
+    BoardCodec.write(board, 3, true, buffer);
+    buffer.flip();
+
+    ByteBuffer cut = buffer.duplicate();
+    cut.limit(cut.limit() - 1);
+    Checks.require(refused(cut), "A drawing cut short was read");
+
+    ByteBuffer flagged = copy(buffer);
+    flagged.put(5, (byte) (flagged.get(5) | 0x80)); // The flags follow the magic and the version
+    Checks.require(refused(flagged), "A drawing with an unknown flag was read");
+
+    if (!board.isEmpty()) {
+      // The label is at 8, then the left, top and size of the crop
+      int size = board.size();
+      ByteBuffer wide = copy(buffer);
+      wide.putShort(13, (short) (size + 1));
+      Checks.require(refused(wide), "A drawing with a crop wider than the image was read");
+      ByteBuffer shifted = copy(buffer);
+      shifted.putShort(9, (short) (size - shifted.getShort(13) + 1));
+      Checks.require(refused(shifted), "A drawing with a crop past the right edge was read");
+      ByteBuffer lowered = copy(buffer);
+      lowered.putShort(11, (short) (size - lowered.getShort(13) + 1));
+      Checks.require(refused(lowered), "A drawing with a crop past the bottom edge was read");
+      ByteBuffer empty = copy(buffer);
+      empty.putShort(13, (short) 0);
+      Checks.require(refused(empty), "A drawing with an empty crop was read");
+    }
+
+    // A 65535x65535 image would take half a gigabyte, so both of these must be refused before a board is made
+    ByteBuffer huge = ByteBuffer.wrap(new byte[] {'D', 'R', 'A', 'W', 1, 0, (byte) 0xFF, (byte) 0xFF, 0});
+    Checks.require(refused(huge, 0xFFFF), "A drawing claiming more bits than the buffer holds was read");
+    ByteBuffer wider = ByteBuffer.wrap(new byte[] {'D', 'R', 'A', 'W', 1, BoardCodec.RUN_LENGTH, (byte) 0xFF,
+        (byte) 0xFF, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x0F});
+    Checks.require(refused(wider, board.size()), "A drawing wider than the reader accepts was read");
+
+    Checks.require(refused(ByteBuffer.wrap(new byte[] {'N', 'O', 'P', 'E', 1, 0, 0, 1})), "A non-drawing was read");
+  }
+
+  /**
+   * Copies an encoded drawing, so one byte of it can be broken without touching the original.
+   * @param buffer the drawing, from its position to its limit
+   * @return a big-endian copy, positioned at the start
+   */
+  private static ByteBuffer copy(ByteBuffer buffer) {
+    ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+    copy.put(buffer.duplicate());
+    copy.flip();
+    return copy;
+  }
+
+  /**
+   * Tries to read a drawing that should be refused, accepting drawings up to 129 pixels wide.
+   * @param buffer the buffer to read
+   * @return whether it was refused with an IOException
+   */
+  private static boolean refused(ByteBuffer buffer) {
+    return refused(buffer, SIZES[SIZES.length - 1]);
+  }
+
+  /**
+   * Tries to read a drawing that should be refused.
+   * @param buffer the buffer to read
+   * @param maxSize the width (and height) of the widest drawing to accept
+   * @return whether it was refused with an IOException
+   */
+  private static boolean refused(ByteBuffer buffer, int maxSize) {
+    try {
+      BoardCodec.read(buffer, maxSize);
+      return false;
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Determines whether two crops cover the same square.
+   * @param first one crop
+   * @param second the other crop
+   * @return whether they are the same
+   */
+  private static boolean sameCrop(CropRect first, CropRect second) {
+    return first.getLeft() == second.getLeft() && first.getTop() == second.getTop()
+        && first.getSize() == second.getSize();
+  }
+
+}
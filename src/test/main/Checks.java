@@ -0,0 +1,97 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * Runs every check of the pipeline's optimized parts against the plain versions they replaced. Each check is also
+ * runnable on its own. A failed check throws, so the run ends with a nonzero exit status:
+ * java main.Checks
+ */
+public class Checks {
+
+  /**
+   * Runs every check.
+   * @param args unused
+   * @throws Exception if a check fails or cannot run
+   */
+  public static void main(String[] args) throws Exception {
+    DrawingBoardCheck.main(args);
+    VisionBoardCheck.main(args);
+    FigureRuleCheck.main(args);
+    LiveGridCheck.main(args);
+    BoardCodecCheck.main(args);
+    System.out.println("All checks passed");
+  }
+
+  /**
+   * Fails the running check unless the given condition holds.
+   * @param condition what must be true
+   * @param message what went wrong, if it is not
+   * @throws AssertionError if the condition does not hold
+   */
+  static void require(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  /**
+   * Draws random brush strokes on a board, a random walk of about the given length that mostly draws and sometimes
+   * erases, the way a user's mouse would.
+   * @param board the board to draw on
+   * @param random the source of the strokes
+   * @param steps how many brush marks to make
+   * @param reference a plain copy of the board to mark the same way, or null for none
+   */
+  static void scribble(DrawingBoard board, Random random, int steps, boolean[][] reference) {
+    int size = board.size();
+    int col = random.nextInt(size);
+    int row = random.nextInt(size);
+    for (int step = 0; step < steps; step += 1) {
+      boolean val = random.nextInt(6) != 0;
+      board.setVal(col, row, val);
+      if (reference != null) {
+        brush(reference, col, row, val);
+      }
+      col = Math.max(0, Math.min(size - 1, col + random.nextInt(5) - 2));
+      row = Math.max(0, Math.min(size - 1, row + random.nextInt(5) - 2));
+    }
+  }
+
+  /**
+   * Marks a plain board the way DrawingBoard.setVal marks a packed one: the cell, and the cells beside, above and
+   * below it where they are on the board.
+   * @param cells the plain board, cell (col, row) at [col][row]
+   * @param col the column to draw at
+   * @param row the row to draw at
+   * @param val the value (draw/erase) to use
+   */
+  static void brush(boolean[][] cells, int col, int row, boolean val) {
+    int size = cells.length;
+    cells[col][row] = val;
+    cells[Math.max(col - 1, 0)][row] = val;
+    cells[Math.min(col + 1, size - 1)][row] = val;
+    cells[col][Math.max(row - 1, 0)] = val;
+    cells[col][Math.min(row + 1, size - 1)] = val;
+  }
+
+  /**
+   * Wraps a plain board as a PixelSource, so it can be scanned the way an image without tracked bounds is.
+   * @param cells the plain board, cell (col, row) at [col][row]
+   * @return a PixelSource reading the same cells
+   */
+  static PixelSource bitmap(boolean[][] cells) {
+    return new PixelSource() {
+      @Override
+      public int size() {
+        return cells.length;
+      }
+
+      @Override
+      public boolean getVal(int col, int row) {
+        return cells[col][row];
+      }
+    };
+  }
+
+}
@@ -0,0 +1,89 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * Checks the bit-packed DrawingBoard against a plain boolean board drawn on with the same strokes: every cell, every
+ * packed run of cells, the active count, the tracked bounds and the modification count must agree.
+ */
+public class DrawingBoardCheck {
+
+  private static final int[] SIZES = {1, 2, 28, 50, 63, 64, 65, 100, 130}; // Around every word boundary
+  private static final int TRIALS = 40; // Boards drawn per size
+  private static final int ROUNDS = 12; // Times each board is drawn on, then compared
+
+  /**
+   * Runs the check.
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    long checks = 0;
+    for (int size : SIZES) {
+      for (int trial = 0; trial < TRIALS; trial += 1) {
+        DrawingBoard board = new DrawingBoard(size);
+        boolean[][] cells = new boolean[size][size];
+        for (int round = 0; round < ROUNDS; round += 1) {
+          Checks.scribble(board, random, random.nextInt(40), cells);
+          compare(board, cells, random);
+          checks += 1;
+        }
+
+        // A stroke that changes nothing must not count as a modification
+        long modCount = board.getModCount();
+        board.setVal(0, 0, cells[0][0]);
+        board.setVal(0, 0, cells[0][0]);
+        Checks.require(board.getModCount() <= modCount + 1, "A stroke that changed nothing counted as a change");
+
+        board.clear();
+        Checks.require(board.isEmpty() && board.getActiveCount() == 0, "A cleared board is not empty");
+      }
+    }
+    System.out.println("DrawingBoardCheck: " + checks + " boards match");
+  }
+
+  /**
+   * Compares a packed board with the plain board it should hold.
+   * @param board the packed board
+   * @param cells the plain board, cell (col, row) at [col][row]
+   * @param random the source of the runs to compare
+   */
+  private static void compare(DrawingBoard board, boolean[][] cells, Random random) {
+    int size = cells.length;
+    int active = 0;
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 1) {
+        Checks.require(board.getVal(col, row) == cells[col][row], "Cell (" + col + ", " + row + ") differs");
+        active += cells[col][row] ? 1 : 0;
+      }
+    }
+    Checks.require(board.getActiveCount() == active, "The active count is " + board.getActiveCount()
+        + " rather than " + active);
+    Checks.require(board.isEmpty() == (active == 0), "The board is wrongly reported as empty or not");
+
+    // Runs of any length at any offset, including ones that straddle two words
+    for (int run = 0; run < 32; run += 1) {
+      int row = random.nextInt(size);
+      int col = random.nextInt(size);
+      int len = 1 + random.nextInt(Math.min(64, size - col));
+      long expected = 0L;
+      for (int idx = 0; idx < len; idx += 1) {
+        expected |= cells[col + idx][row] ? 1L << idx : 0L;
+      }
+      Checks.require(board.getBits(col, row, len) == expected, "The run of " + len + " at (" + col + ", " + row
+          + ") differs");
+    }
+
+    // The bounds are tracked as the board is drawn on, so they must match a full scan of the same cells
+    if (active > 0) {
+      CropRect tracked = board.getCrop();
+      CropRect scanned = CropRect.scan(Checks.bitmap(cells));
+      Checks.require(tracked.getLeft() == scanned.getLeft() && tracked.getTop() == scanned.getTop()
+          && tracked.getSize() == scanned.getSize(), "The tracked crop differs from a scan of the board");
+      Checks.require(tracked.getLeft() >= 0 && tracked.getTop() >= 0
+          && tracked.getLeft() + tracked.getSize() <= size && tracked.getTop() + tracked.getSize() <= size,
+          "The crop hangs off the board");
+    }
+  }
+
+}
@@ -0,0 +1,482 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * Checks the FigureRule table against the hand-coded hasFigure methods it replaced, which are kept below exactly as
+ * they were written, reading the same flat 5x5 grid. The grids are drawn mostly from values on or beside the
+ * thresholds the figures branch on, since that is where a table entry could most easily disagree. LayerOne's
+ * scoreFigures, hasFigure and rescoreFigures must all give the same weights as evaluating the table directly.
+ */
+public class FigureRuleCheck {
+
+  private static final int TRIALS = 200_000; // Random grids to compare
+  private static final double[] EDGES = {0.0, 1e-9, 0.2, 0.2 + 1e-9, 0.4 - 1e-9, 0.4, 1.0}; // Values worth hitting
+  private static final double TOLERANCE = 1e-12; // The table may add the same terms in another order
+  private static final int[] FINER_SIZES = {5, 7, 10, 14}; // Grids whose figures are rescored after a change
+
+  /**
+   * Runs the check.
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    Random random = new Random(3);
+    double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+    for (int trial = 0; trial < TRIALS; trial += 1) {
+      LayerOne l1 = new LayerOne();
+      double[] grid = l1.getGrid();
+      for (int cell = 0; cell < grid.length; cell += 1) {
+        grid[cell] = randomValue(random);
+      }
+      l1.scoreFigures(figures);
+      for (int figure = 0; figure < DigitClassifier.FIGURE_COUNT; figure += 1) {
+        double expected = reference(figure, grid);
+        double table = FigureRule.FIGURES[figure].evaluate(grid);
+        Checks.require(Math.abs(table - expected) <= TOLERANCE, "Figure " + (char) ('A' + figure) + " is " + table
+            + " rather than " + expected);
+        Checks.require(figures[figure] == table && l1.hasFigure(figure) == table, "LayerOne scores figure "
+            + (char) ('A' + figure) + " differently from the table");
+      }
+    }
+
+    int rescored = 0;
+    for (int size : FINER_SIZES) {
+      for (int trial = 0; trial < TRIALS / 20; trial += 1) {
+        rescored += compareRescore(size, random);
+      }
+    }
+    System.out.println("FigureRuleCheck: " + TRIALS + " grids and " + rescored + " rescored figures match");
+  }
+
+  /**
+   * Changes a few cells of a scored grid, rescores only the figures that read them, and compares the result with
+   * scoring every figure again.
+   * @param size the width (and height) of the grid
+   * @param random the source of the grid and the changes
+   * @return how many figures were compared
+   */
+  private static int compareRescore(int size, Random random) {
+    LayerOne l1 = new LayerOne(size);
+    double[] grid = l1.getGrid();
+    for (int cell = 0; cell < grid.length; cell += 1) {
+      grid[cell] = randomValue(random);
+    }
+    double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+    l1.scoreFigures(figures);
+
+    boolean[] changed = new boolean[grid.length];
+    for (int change = random.nextInt(4); change >= 0; change -= 1) {
+      int cell = random.nextInt(grid.length);
+      grid[cell] = randomValue(random);
+      changed[cell] = true;
+    }
+    l1.rescoreFigures(figures, changed);
+
+    double[] expected = new double[DigitClassifier.FIGURE_COUNT];
+    l1.scoreFigures(expected);
+    for (int figure = 0; figure < DigitClassifier.FIGURE_COUNT; figure += 1) {
+      Checks.require(figures[figure] == expected[figure], "Rescoring a " + size + "x" + size + " grid left figure "
+          + (char) ('A' + figure) + " at " + figures[figure] + " rather than " + expected[figure]);
+    }
+    return DigitClassifier.FIGURE_COUNT;
+  }
+
+  /**
+   * Picks a cell value, usually one of the thresholds the figures branch on or just beside one.
+   * @param random the source of the value
+   * @return the value
+   */
+  private static double randomValue(Random random) {
+    return random.nextInt(3) == 0 ? random.nextDouble() * 1.2 : EDGES[random.nextInt(EDGES.length)];
+  }
+
+  /**
+   * Evaluates one figure with the original hand-coded method.
+   * @param figure the figure to assess, 0 for A through 18 for S
+   * @param g the 5x5 grid, cell (col, row) at index col * 5 + row
+   * @return the estimated weight of that figure
+   */
+  private static double reference(int figure, double[] g) {
+    switch (figure) {
+      case 0: return figureA(g);
+      case 1: return figureB(g);
+      case 2: return figureC(g);
+      case 3: return figureD(g);
+      case 4: return figureE(g);
+      case 5: return figureF(g);
+      case 6: return figureG(g);
+      case 7: return figureH(g);
+      case 8: return figureI(g);
+      case 9: return figureJ(g);
+      case 10: return figureK(g);
+      case 11: return figureL(g);
+      case 12: return figureM(g);
+      case 13: return figureN(g);
+      case 14: return figureO(g);
+      case 15: return figureP(g);
+      case 16: return figureQ(g);
+      case 17: return figureR(g);
+      default: return figureS(g);
+    }
+  }
+
+  /**
+   * Reads one cell of a 5x5 grid.
+   * @param g the grid, cell (col, row) at index col * 5 + row
+   * @param col the column to read
+   * @param row the row to read
+   * @return the value of the cell
+   */
+  private static double cell(double[] g, int col, int row) {
+    return g[col * 5 + row];
+  }
+
+  /*
+   * The original figure methods, unchanged apart from reading the flat grid.
+   */
+
+  // BOTTOM HORIZONTAL
+  private static double figureA(double[] g) {
+
+    if (cell(g, 1, 4) == 0 || cell(g, 3, 4) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 0, 4) == 0 || cell(g, 4, 4) == 0) {
+      return cell(g, 1, 4) * 0.5 + cell(g, 2, 4) * 0.8
+          + cell(g, 3, 4) * 0.5;
+    }
+
+    if (cell(g, 0, 4) < 0.4 || cell(g, 4, 4) < 0.4) {
+      return cell(g, 1, 4) + cell(g, 2, 4) * 1.1 + cell(g, 3, 4)
+          + (cell(g, 0, 4) + cell(g, 4, 4)) / 5.0;
+    }
+
+    return cell(g, 1, 4) * 1.1 + cell(g, 2, 4) * 1.3
+        + cell(g, 3, 4) * 1.1 + (cell(g, 0, 4) + cell(g, 4, 4)) / 5.0;
+  }
+
+  // TOP HORIZONTAL
+  private static double figureB(double[] g) {
+
+    if (cell(g, 1, 0) == 0 || cell(g, 2, 0) == 0 || cell(g, 3, 0) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 0, 0) == 0 || cell(g, 4, 0) == 0) {
+      return cell(g, 1, 0) * 0.5 + cell(g, 2, 0) * 0.8
+          + cell(g, 3, 0) * 0.5;
+    }
+
+    if (cell(g, 0, 0) < 0.4 || cell(g, 4, 0) < 0.4) {
+      return cell(g, 1, 0) + cell(g, 2, 0) * 1.1 + cell(g, 3, 0)
+          + (cell(g, 0, 0) + cell(g, 4, 0)) / 5.0;
+    }
+
+    return cell(g, 1, 0) * 1.1 + cell(g, 2, 0) * 1.3
+        + cell(g, 3, 0) * 1.1 + (cell(g, 0, 0) + cell(g, 4, 0)) / 5.0;
+  }
+
+  // RIGHT VERTICAL
+  private static double figureC(double[] g) {
+
+    if (cell(g, 3, 1) == 0 || cell(g, 3, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 3, 0) == 0 || cell(g, 3, 4) == 0) {
+      return cell(g, 3, 1) * 0.5 + cell(g, 3, 2) * 0.8
+          + cell(g, 3, 3) * 0.5;
+    }
+
+    if (cell(g, 3, 0) < 0.4 || cell(g, 3, 4) < 0.4) {
+      return cell(g, 3, 1) + cell(g, 3, 2) * 1.1 + cell(g, 3, 3)
+          + (cell(g, 3, 0) + cell(g, 3, 4)) / 5.0;
+    }
+
+    return cell(g, 3, 1) * 1.1 + cell(g, 3, 2) * 1.3
+        + cell(g, 3, 3) * 1.1 + (cell(g, 3, 0) + cell(g, 4, 4)) / 5.0;
+  }
+
+  // CENTER VERTICAL
+  private static double figureD(double[] g) {
+
+    if (cell(g, 2, 1) == 0 || cell(g, 2, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 2, 0) == 0 || cell(g, 2, 4) == 0) {
+      return cell(g, 2, 1) * 0.5 + cell(g, 2, 2) * 0.8
+          + cell(g, 2, 3) * 0.5;
+    }
+
+    if (cell(g, 2, 0) < 0.4 || cell(g, 2, 4) < 0.4) {
+      return cell(g, 2, 1) + cell(g, 2, 2) * 1.1 + cell(g, 2, 3)
+          + (cell(g, 2, 0) + cell(g, 2, 4)) / 5.0;
+    }
+
+    return cell(g, 2, 1) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 2, 3) * 1.1 + (cell(g, 2, 0) + cell(g, 2, 4)) / 5.0;
+  }
+
+  // DIAGONAL (2,4) to (3, 0) or (1,4) to (3,0)
+  private static double figureE(double[] g) {
+
+    if ((cell(g, 2, 3) <= 0.2 && cell(g, 3, 1) <= 0.2)
+        || (cell(g, 1, 3) <= 0.2 && cell(g, 3, 1) <= 0.2)) {
+      return 0.0;
+    }
+
+    if (cell(g, 2, 4) == 0 || cell(g, 3, 0) == 0) {
+      return Math.max(cell(g, 2, 3) * 0.5 + cell(g, 2, 2) * 0.8
+          + cell(g, 3, 1) * 0.5, cell(g, 1, 3) * 0.5 + cell(g, 2, 2) * 0.8
+          + cell(g, 3, 1) * 0.5);
+    }
+
+    if (cell(g, 0, 4) < 0.4 || cell(g, 4, 0) < 0.4) {
+      return Math.max(cell(g, 2, 3) + cell(g, 2, 2) * 1.1 + cell(g, 3, 1)
+          + (cell(g, 2, 4) + cell(g, 3, 0)) / 5.0,
+          cell(g, 1, 3) + cell(g, 2, 2) * 1.1 + cell(g, 3, 1)
+          + (cell(g, 1, 4) + cell(g, 3, 0)) / 5.0);
+    }
+
+    return Math.max(cell(g, 2, 3) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 3, 1) * 1.1 + (cell(g, 2, 4) + cell(g, 3, 0)) / 5.0,
+        cell(g, 1, 3) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 3, 1) * 1.1 + (cell(g, 1, 4) + cell(g, 3, 0)) / 5.0);
+  }
+
+  // CENTER HORIZONTAL
+  private static double figureF(double[] g) {
+    
+    if (cell(g, 1, 2) == 0 || cell(g, 3, 2) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 0, 2) == 0 || cell(g, 4, 2) == 0) {
+      return cell(g, 1, 2) * 0.75 + cell(g, 2, 2) * 1
+          + cell(g, 3, 2) * 0.75;
+    }
+
+    if (cell(g, 0, 2) < 0.4 || cell(g, 4, 2) < 0.4) {
+      return cell(g, 1, 2) + cell(g, 2, 2) * 1.1 + cell(g, 3, 2)
+          + (cell(g, 0, 2) + cell(g, 4, 2)) / 5.0;
+    }
+
+    return cell(g, 1, 2) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 3, 2) * 1.1 + (cell(g, 0, 2) + cell(g, 4, 2)) / 5.0;
+  }
+
+  // LEFT FORK
+  private static double figureG(double[] g) {
+
+    if (cell(g, 1, 0) == 0 || cell(g, 1, 1) == 0) {
+      return 0.0;
+    }
+
+    return cell(g, 1, 0) * 0.5 + cell(g, 1, 1) * 0.8
+        + cell(g, 1, 2) * 0.5;
+
+  }
+
+  // LEFT LEG
+  private static double figureH(double[] g) {
+
+    if (cell(g, 1, 3) == 0 || cell(g, 1, 4) == 0) {
+      return 0.0;
+    }
+
+    return Math.max(cell(g, 1, 2) * 0.5 + cell(g, 1, 3) * 0.8
+        + cell(g, 1, 4) * 0.5, cell(g, 0, 2) * 0.5 + cell(g, 0, 3) * 0.8
+        + cell(g, 0, 4) * 0.5);
+
+  }
+
+  // TOPLEFT ROOF
+  private static double figureI(double[] g) {
+
+    if (cell(g, 0, 0) == 0 || cell(g, 1, 0) == 0
+        || cell(g, 2, 0) == 0) {
+      return 0.0;
+    }
+
+    return cell(g, 0, 0) * 0.5 + cell(g, 1, 0) * 0.8
+        + cell(g, 2, 0) * 0.5;
+
+  }
+
+  // LEFT CURVE
+  private static double figureJ(double[] g) {
+
+    if (cell(g, 1, 1) == 0 || cell(g, 1, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 2, 0) == 0 || cell(g, 2, 4) == 0) {
+      return cell(g, 1, 1) * 0.5 + cell(g, 1, 2) * 0.8
+          + cell(g, 1, 3) * 0.5;
+    }
+
+    if (cell(g, 2, 0) < 0.4 || cell(g, 2, 4) < 0.4) {
+      return cell(g, 1, 1) + cell(g, 1, 2) * 1.1 + cell(g, 1, 3)
+          + (cell(g, 2, 0) + cell(g, 2, 4)) / 5.0;
+    }
+
+    return cell(g, 1, 1) * 1.1 + cell(g, 1, 2) * 1.3
+        + cell(g, 1, 3) * 1.1 + (cell(g, 2, 0) + cell(g, 2, 4)) / 5.0;
+  }
+
+  // CENTER RIGHT CURVE
+  private static double figureK(double[] g) {
+
+    if (cell(g, 2, 1) == 0 || cell(g, 2, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 3, 0) == 0 || cell(g, 3, 4) == 0) {
+      return cell(g, 2, 1) * 0.5 + cell(g, 2, 2) * 0.8
+          + cell(g, 2, 3) * 0.5;
+    }
+
+    if (cell(g, 3, 0) < 0.4 || cell(g, 3, 4) < 0.4) {
+      return cell(g, 2, 1) + cell(g, 2, 2) * 1.1 + cell(g, 2, 3)
+          + (cell(g, 3, 0) + cell(g, 3, 4)) / 5.0;
+    }
+
+    return cell(g, 2, 1) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 2, 3) * 1.1 + (cell(g, 3, 0) + cell(g, 2, 4)) / 5.0;
+  }
+  
+  // TOPCENTER ROOF
+  private static double figureL(double[] g) {
+    
+    if (cell(g, 2, 0) <= .2) {
+      return 0.0;
+    }
+
+    if (cell(g, 1, 0) == 0 || cell(g, 2, 0) == 0
+        || cell(g, 3, 0) == 0) {
+      return 0.0;
+    }
+
+    return cell(g, 1, 0) * 0.3 + cell(g, 2, 0) * 0.5
+        + cell(g, 3, 0) * 0.3;
+
+  }
+  
+  // RIGHT LEG
+  private static double figureM(double[] g) {
+    
+    if (cell(g, 3, 3) == 0 || cell(g, 3, 4) == 0) {
+      return 0.0;
+    }
+
+    return Math.max(cell(g, 3, 2) * 0.5 + cell(g, 3, 3) * 0.8
+        + cell(g, 3, 4) * 0.5, cell(g, 4, 2) * 0.5 + cell(g, 4, 3) * 0.8
+        + cell(g, 4, 4) * 0.5);
+    
+  }
+  
+  // DIAGONAL (1,0) to (3, 4)
+  private static double figureN(double[] g) {
+
+    if (cell(g, 1, 1) <= 0.2 || cell(g, 2, 2) < .4 || cell(g, 3, 3) <= 0.2) {
+      return 0.0;
+    }
+
+    if (cell(g, 1, 0) == 0 || cell(g, 3, 4) == 0) {
+      return cell(g, 1, 1) * 0.5 + cell(g, 2, 2) * 0.8
+          + cell(g, 3, 3) * 0.5;
+    }
+
+    if (cell(g, 1, 0) < 0.4 || cell(g, 3, 4) < 0.4) {
+      return cell(g, 1, 1) + cell(g, 2, 2) * 1.1 + cell(g, 3, 3)
+          + (cell(g, 1, 0) + cell(g, 3, 4)) / 5.0;
+    }
+
+    return cell(g, 1, 1) * 1.1 + cell(g, 2, 2) * 1.3
+        + cell(g, 3, 3) * 1.1 + (cell(g, 1, 0) + cell(g, 3, 4)) / 5.0;
+  }
+  
+  // MID-HIGH CENTER ROOF
+  private static double figureO(double[] g) {
+    
+    if (cell(g, 2, 1) <= .2) {
+      return 0.0;
+    }
+
+    if (cell(g, 1, 1) == 0 || cell(g, 2, 1) == 0
+        || cell(g, 3, 1) == 0) {
+      return 0.0;
+    }
+
+    return cell(g, 1, 1) * 0.3 + cell(g, 2, 1) * 0.5
+        + cell(g, 3, 1) * 0.3;
+  }
+  
+  // RIGHT FORK
+  private static double figureP(double[] g) {
+
+    if (cell(g, 3, 0) == 0 || cell(g, 3, 1) == 0) {
+      return 0.0;
+    }
+
+    return cell(g, 3, 0) * 0.5 + cell(g, 3, 1) * 0.8
+        + cell(g, 3, 2) * 0.5;
+
+  }
+  
+  // TOPLEFT CURVE (on a 2)
+  private static double figureQ(double[] g) {
+
+    return cell(g, 0, 1) * 0.5 + cell(g, 0, 0) * 0.8
+        + cell(g, 1, 0) * 0.5;
+
+  }
+  
+  // FAR LEFT VERTICAL (only used in detecting zeroes)
+  private static double figureR(double[] g) {
+
+    if (cell(g, 0, 1) == 0 || cell(g, 0, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 0, 0) == 0 || cell(g, 0, 4) == 0) {
+      return cell(g, 0, 1) * 0.5 + cell(g, 0, 2) * 0.8
+          + cell(g, 0, 3) * 0.5;
+    }
+
+    if (cell(g, 0, 0) < 0.4 || cell(g, 0, 4) < 0.4) {
+      return cell(g, 0, 1) + cell(g, 0, 2) * 1.1 + cell(g, 0, 3)
+          + (cell(g, 0, 0) + cell(g, 0, 4)) / 5.0;
+    }
+
+    return cell(g, 0, 1) * 1.1 + cell(g, 0, 2) * 1.3
+        + cell(g, 0, 3) * 1.1 + (cell(g, 0, 0) + cell(g, 0, 4)) / 5.0;
+  }
+  
+  // FAR RIGHT VERTICAL (only used in detecting zeroes)
+  private static double figureS(double[] g) {
+
+    if (cell(g, 4, 1) == 0 || cell(g, 4, 3) == 0) {
+      return 0.0;
+    }
+
+    if (cell(g, 4, 0) == 0 || cell(g, 4, 4) == 0) {
+      return cell(g, 4, 1) * 0.5 + cell(g, 4, 2) * 0.8
+          + cell(g, 4, 3) * 0.5;
+    }
+
+    if (cell(g, 4, 0) < 0.4 || cell(g, 4, 4) < 0.4) {
+      return cell(g, 4, 1) + cell(g, 4, 2) * 1.1 + cell(g, 0, 3)
+          + (cell(g, 4, 0) + cell(g, 4, 4)) / 5.0;
+    }
+
+    return cell(g, 4, 1) * 1.1 + cell(g, 4, 2) * 1.3
+        + cell(g, 4, 3) * 1.1 + (cell(g, 4, 0) + cell(g, 0, 4)) / 5.0;
+  }
+  
+  
+  
+
+}
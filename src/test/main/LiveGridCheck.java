@@ -0,0 +1,87 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that a LiveGrid patched stroke by stroke always holds exactly the grid and figures a VisionBoard builds
+ * from scratch for the same board, and that the prediction read off its figures is the one predict makes.
+ */
+public class LiveGridCheck {
+
+  private static final int[] SIZES = {28, 50, 100};
+  private static final int[] GRID_SIZES = {5, 7, 10, 14};
+  private static final int TRIALS = 12; // Boards drawn per pair of sizes
+  private static final int STEPS = 300; // Brush marks per board
+
+  /**
+   * Runs the check.
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    Random random = new Random(4);
+    long checks = 0;
+    long patches = 0;
+    for (int size : SIZES) {
+      for (int gridSize : GRID_SIZES) {
+        DigitClassifier classifier = new DigitClassifier(gridSize);
+        for (int trial = 0; trial < TRIALS; trial += 1) {
+          checks += follow(size, gridSize, classifier, random);
+        }
+      }
+    }
+    System.out.println("LiveGridCheck: " + checks + " updates match a full rebuild");
+  }
+
+  /**
+   * Draws one board, updating a LiveGrid every few brush marks and comparing it with a full rebuild each time.
+   * @param size the width (and height) of the board
+   * @param gridSize the width (and height) of the grid
+   * @param classifier the classifier to compare predictions with, on a grid of gridSize
+   * @param random the source of the strokes
+   * @return how many updates were compared
+   */
+  private static int follow(int size, int gridSize, DigitClassifier classifier, Random random) {
+    DrawingBoard board = new DrawingBoard(size);
+    LiveGrid live = new LiveGrid(board, gridSize);
+    Scratch scratch = new Scratch();
+    double[] figures = new double[DigitClassifier.FIGURE_COUNT];
+    int col = size / 2;
+    int row = size / 2;
+    int batch = 1 + random.nextInt(4); // Brush marks between updates
+    int checks = 0;
+    for (int step = 0; step < STEPS; step += 1) {
+      col = Math.max(0, Math.min(size - 1, col + random.nextInt(5) - 2));
+      row = Math.max(0, Math.min(size - 1, row + random.nextInt(5) - 2));
+      board.setVal(col, row, random.nextInt(5) != 0);
+      live.markChanged(col - 1, row - 1, col + 1, row + 1);
+      if (step % batch != 0) {
+        continue;
+      }
+
+      boolean updated = live.update();
+      LayerOne expected = null;
+      if (!board.isEmpty()) {
+        try {
+          expected = new VisionBoard(board).generateGrid(gridSize);
+          expected.scoreFigures(figures);
+        }
+        catch (IllegalArgumentException e) {
+          expected = null; // Too small for the grid
+        }
+      }
+      Checks.require(updated == (expected != null), "The LiveGrid wrongly reports whether there is a grid");
+      if (expected != null) {
+        Checks.require(Arrays.equals(live.getGrid().getGrid(), expected.getGrid()), "The " + gridSize + "x"
+            + gridSize + " grid differs from a rebuild at step " + step);
+        Checks.require(Arrays.equals(live.getFigures(), figures), "The figures differ from a rebuild at step "
+            + step);
+        Checks.require(classifier.predictFigures(live.getFigures(), scratch) == classifier.predict(board, scratch),
+            "The prediction from the figures differs from predict at step " + step);
+      }
+      checks += 1;
+    }
+    return checks;
+  }
+
+}
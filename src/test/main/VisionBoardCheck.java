@@ -0,0 +1,177 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * Checks the VisionBoard against a plain version of the original algorithm: the relevant part of the image is cut
+ * out cell by cell, each active cell is weighted by counting its neighbors one at a time, and each grid cell is the
+ * running total of its section. The summed-area table and the shifted neighbor counts must give the same totals,
+ * and the same grid up to rounding.
+ */
+public class VisionBoardCheck {
+
+  private static final int[] SIZES = {28, 50, 100, 130}; // Images up to three words wide
+  private static final int[] GRID_SIZES = {5, 7, 10, 14};
+  private static final int TRIALS = 150; // Drawings per image size
+  private static final double[] WEIGHTS = {.05, .3, .7, .8, .9, 1, 1.1, 1.15, 1.3}; // By amount of active neighbors
+  private static final int[] TWENTIETHS = {1, 6, 14, 16, 18, 20, 22, 23, 26}; // The same weights, in twentieths
+  private static final double TOLERANCE = 1e-12; // The table and the running total may round differently
+
+  /**
+   * Runs the check.
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    Random random = new Random(2);
+    long checks = 0;
+    for (int size : SIZES) {
+      for (int trial = 0; trial < TRIALS; trial += 1) {
+        DrawingBoard board = new DrawingBoard(size);
+        Checks.scribble(board, random, 1 + random.nextInt(120), null);
+        if (trial % 3 == 0) {
+          // Reach the right and bottom edges, where the relevant part runs one past the image
+          board.setVal(size - 1, random.nextInt(size), true);
+          board.setVal(random.nextInt(size), size - 1, true);
+        }
+        if (board.isEmpty()) {
+          continue;
+        }
+
+        VisionBoard vBoard = new VisionBoard(board);
+        boolean[][] part = relevantPart(board, vBoard.getCrop());
+        checks += compareSections(vBoard, part, random);
+        for (int gridSize : GRID_SIZES) {
+          if (part.length >= gridSize) {
+            compareGrid(vBoard, part, gridSize);
+            checks += 1;
+          }
+        }
+      }
+    }
+    System.out.println("VisionBoardCheck: " + checks + " sections and grids match");
+  }
+
+  /**
+   * Compares the totals the summed-area table gives for random squares with totals counted cell by cell.
+   * @param vBoard the VisionBoard to check
+   * @param part the relevant part of the image, cell (col, row) at [col][row]
+   * @param random the source of the squares
+   * @return how many squares were compared
+   */
+  private static int compareSections(VisionBoard vBoard, boolean[][] part, Random random) {
+    int squares = 20;
+    for (int idx = 0; idx < squares; idx += 1) {
+      int dim = 1 + random.nextInt(part.length);
+      int left = random.nextInt(part.length - dim + 1);
+      int top = random.nextInt(part.length - dim + 1);
+      int expected = 0;
+      for (int col = left; col < left + dim; col += 1) {
+        for (int row = top; row < top + dim; row += 1) {
+          expected += part[col][row] ? TWENTIETHS[countActiveNeighbors(part, col, row)] : 0;
+        }
+      }
+      Checks.require(vBoard.sectionWeight(left, top, dim) == expected, "The square of " + dim + " at (" + left
+          + ", " + top + ") weighs " + vBoard.sectionWeight(left, top, dim) + " rather than " + expected);
+    }
+    return squares;
+  }
+
+  /**
+   * Compares a generated grid with one averaged the way the original VisionBoard did.
+   * @param vBoard the VisionBoard to check
+   * @param part the relevant part of the image, cell (col, row) at [col][row]
+   * @param gridSize the width (and height) of the grid
+   */
+  private static void compareGrid(VisionBoard vBoard, boolean[][] part, int gridSize) {
+    double[] grid = vBoard.generateGrid(gridSize).getGrid();
+    int boardSize = part.length;
+    int step = boardSize / gridSize;
+
+    // The original layout: sections are one cell wider while there is remainder left to spread, and each of those
+    // shifts the ones after it along
+    int remCount = 0;
+    int cell = 0;
+    for (int col = 0; col < boardSize; col += step) {
+      int rem = boardSize % gridSize;
+      col -= remCount;
+      remCount = 0;
+      for (int row = 0; row < boardSize; row += step) {
+        int dim = rem > 0 ? step + 1 : step;
+        double expected = averageSection(part, col, row, dim);
+        Checks.require(Math.abs(grid[cell] - expected) <= TOLERANCE, "Cell " + cell + " of the " + gridSize + "x"
+            + gridSize + " grid is " + grid[cell] + " rather than " + expected);
+        if (rem > 0) {
+          rem -= 1;
+          col += 1;
+          row += 1;
+          remCount += 1;
+        }
+        cell += 1;
+      }
+    }
+    Checks.require(cell == gridSize * gridSize, "The layout has " + cell + " sections");
+  }
+
+  /**
+   * Averages a section the way the original VisionBoard did, adding up the weight of each cell as a double.
+   * @param part the relevant part of the image, cell (col, row) at [col][row]
+   * @param left the left bound (inclusive)
+   * @param top the top bound (inclusive)
+   * @param dim the width (and height) of the section
+   * @return the weighted average value across that section
+   */
+  private static double averageSection(boolean[][] part, int left, int top, int dim) {
+    double total = 0.0;
+    for (int col = left; col < left + dim; col += 1) {
+      for (int row = top; row < top + dim; row += 1) {
+        if (part[col][row]) {
+          total += WEIGHTS[countActiveNeighbors(part, col, row)];
+        }
+      }
+    }
+    return total / (dim * dim * 1.44);
+  }
+
+  /**
+   * Counts the active neighbors of a cell, adjacent and diagonal, one at a time.
+   * @param part the relevant part of the image, cell (col, row) at [col][row]
+   * @param col the column to check
+   * @param row the row to check
+   * @return the number of active neighbors
+   */
+  private static int countActiveNeighbors(boolean[][] part, int col, int row) {
+    int count = 0;
+    for (int dCol = -1; dCol <= 1; dCol += 1) {
+      for (int dRow = -1; dRow <= 1; dRow += 1) {
+        int nCol = col + dCol;
+        int nRow = row + dRow;
+        if ((dCol != 0 || dRow != 0) && nCol >= 0 && nRow >= 0 && nCol < part.length && nRow < part.length
+            && part[nCol][nRow]) {
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Cuts the relevant part out of an image: the crop, plus one more row and column, empty where they are past the
+   * edge of the image.
+   * @param board the image
+   * @param crop the crop of the image
+   * @return the relevant part, cell (col, row) at [col][row]
+   */
+  private static boolean[][] relevantPart(DrawingBoard board, CropRect crop) {
+    int size = crop.getSize() + 1;
+    boolean[][] part = new boolean[size][size];
+    for (int col = 0; col < size; col += 1) {
+      for (int row = 0; row < size; row += 1) {
+        int imageCol = crop.getLeft() + col;
+        int imageRow = crop.getTop() + row;
+        part[col][row] = imageCol < board.size() && imageRow < board.size() && board.getVal(imageCol, imageRow);
+      }
+    }
+    return part;
+  }
+
+}